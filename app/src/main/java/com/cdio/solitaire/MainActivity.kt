@@ -3,12 +3,17 @@ package com.cdio.solitaire
 import android.Manifest
 import android.content.pm.PackageManager
 import android.os.Bundle
+import android.util.Log
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.core.app.ActivityCompat
 import androidx.core.content.ContextCompat
+import com.cdio.solitaire.controller.DecisionCache
+import com.cdio.solitaire.controller.StrategyController
 import com.cdio.solitaire.databinding.ActivityMainBinding
+import java.io.File
+import kotlin.concurrent.thread
 
 class MainActivity : AppCompatActivity() {
     private lateinit var activityMainBinding: ActivityMainBinding
@@ -24,6 +29,17 @@ class MainActivity : AppCompatActivity() {
         // Load in OpenCV library
         System.loadLibrary("opencv_java4")
 
+        // Reuse the decisions of earlier games, loaded off the main thread
+        val strategyController = StrategyController.instance
+        if (strategyController.decisionCache == null) {
+            val file = File(filesDir, DECISION_CACHE_FILE)
+            val strategyKey = strategyController.strategyKey
+            thread(name = "DecisionCacheLoad") {
+                val decisionCache = DecisionCache.open(file, strategyKey)
+                runOnUiThread { strategyController.decisionCache = decisionCache }
+            }
+        }
+
         if (!allPermissionsGranted()) {
             ActivityCompat.requestPermissions(
                 this, REQUIRED_PERMISSIONS, REQUEST_CODE_PERMISSIONS
@@ -31,6 +47,18 @@ class MainActivity : AppCompatActivity() {
         }
     }
 
+    override fun onStop() {
+        super.onStop()
+        val decisionCache = StrategyController.instance.decisionCache ?: return
+        thread(name = "DecisionCacheSave") {
+            try {
+                decisionCache.save()
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not save the decision cache", e)
+            }
+        }
+    }
+
     private fun allPermissionsGranted() = REQUIRED_PERMISSIONS.all {
         ContextCompat.checkSelfPermission(
             baseContext, it
@@ -57,7 +85,9 @@ class MainActivity : AppCompatActivity() {
     }
 
     companion object {
+        private const val TAG = "MainActivity"
         private const val REQUEST_CODE_PERMISSIONS = 10
+        private const val DECISION_CACHE_FILE = "decisions.bin"
         private val REQUIRED_PERMISSIONS =
             mutableListOf(
                 Manifest.permission.CAMERA,
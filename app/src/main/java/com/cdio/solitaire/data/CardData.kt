@@ -56,13 +56,16 @@ object CardData {
 
     private fun updateCards() {
         Log.d("CameraFragment", "Size of prediction output ${predictionOutput.size}")
-        val gameStateController = StrategyController.gsc
+        val gameStateController = StrategyController.instance.gsc
         for (i in predictionOutput.indices) {
             val cardStack = gameStateController.getCardStackFromID(i)
             if (cardStack.tail != null) {
                 if (cardStack.tail!!.rank == Rank.NA) { // Only assign values to new cards.
-                    cardStack.tail!!.suit = Suit.values()[predictionOutput[i][0]]
-                    cardStack.tail!!.rank = Rank.values()[predictionOutput[i][1]]
+                    gameStateController.revealCard(
+                        cardStack.tail!!,
+                        Rank.values()[predictionOutput[i][1]],
+                        Suit.values()[predictionOutput[i][0]]
+                    )
                 }
             }
         }
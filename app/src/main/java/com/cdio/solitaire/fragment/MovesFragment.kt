@@ -60,10 +60,10 @@ class MovesFragment : Fragment() {
         wrongCardButton.setOnClickListener { getCardInput(view) }
 
         movesMadeText = view.findViewById(R.id.moves_counter)
-        movesMadeText.text = getString(R.string.moves_made, StrategyController.gsc.gameState.moves.size)
+        movesMadeText.text = getString(R.string.moves_made, StrategyController.instance.gsc.gameState.moves.size)
 
         hiddenCardsText = view.findViewById(R.id.hidden_cards)
-        hiddenCardsText.text = getString(R.string.hidden_cards, StrategyController.gsc.getNumberOfHiddenCards())
+        hiddenCardsText.text = getString(R.string.hidden_cards, StrategyController.instance.gsc.getNumberOfHiddenCards())
 
         changeLastRevealedCard(view)
     }
@@ -80,19 +80,22 @@ class MovesFragment : Fragment() {
      * Get next move from moveQueue, and display it. If camera is needed, change button function
      */
     private fun getNextMove(view: View) {
-        val nextMove = StrategyController.nextMove()
+        val nextMove = StrategyController.instance.nextMove()
 
         wrongCardButton.isVisible = false
 
         changeNextMoveText(nextMove.toString())
 
-        movesMadeText.text = getString(R.string.moves_made, StrategyController.gsc.gameState.moves.size)
+        movesMadeText.text = getString(R.string.moves_made, StrategyController.instance.gsc.gameState.moves.size)
         // If the game is won or lost, reset the GameState to allow new game
         if (nextMove.moveType == MoveType.GAME_WON || nextMove.moveType == MoveType.GAME_LOST) {
-            StrategyController.gsc.resetGameState()
+            StrategyController.instance.reset()
             nextButton.text = getString(R.string.play_again)
             nextButton.setOnClickListener { navigateToCamera(view) }
         } else if (nextMove.cardToUpdate != null || nextMove.moveType == MoveType.DEAL_CARDS) {
+            // Choose the following move for every card it can be, while the camera recognizes it.
+            if (nextMove.cardToUpdate != null)
+                StrategyController.instance.speculator?.speculate(StrategyController.instance, nextMove.cardToUpdate!!)
             flipButton(view, getString(R.string.open_camera))
         }
     }
@@ -150,8 +153,7 @@ class MovesFragment : Fragment() {
                     else -> 0
                 }
 
-                revealedCards[cardIndex].rank = Rank.values()[rank]
-                revealedCards[cardIndex].suit = Suit.values()[newSuit]
+                StrategyController.instance.gsc.revealCard(revealedCards[cardIndex], Rank.values()[rank], Suit.values()[newSuit])
 
                 changeLastRevealedCard(view)
 
@@ -174,12 +176,12 @@ class MovesFragment : Fragment() {
         revealedCards.clear()
 
         // If it's the first scan of cards, all all new 7 cards, else only add newest card revealed
-        if (StrategyController.gsc.getLastMove().moveType == MoveType.DEAL_CARDS) {
-            for (i in StrategyController.gsc.gameState.tableaux) {
+        if (StrategyController.instance.gsc.getLastMove().moveType == MoveType.DEAL_CARDS) {
+            for (i in StrategyController.instance.gsc.gameState.tableaux) {
                 revealedCards.add(i.tail!!)
             }
         } else {
-            revealedCards.add(StrategyController.gsc.getLastMove().cardToUpdate!!)
+            revealedCards.add(StrategyController.instance.gsc.getLastMove().cardToUpdate!!)
         }
 
         var firstScan = true
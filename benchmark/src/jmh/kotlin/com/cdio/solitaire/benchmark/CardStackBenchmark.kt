@@ -0,0 +1,57 @@
+package com.cdio.solitaire.benchmark
+
+import com.cdio.solitaire.model.Card
+import com.cdio.solitaire.model.CardStack
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * The CardStack operations used by GameStateController, for both implementations. Every benchmark
+ * leaves the stacks as it found them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class CardStackBenchmark {
+    @Param("linked", "array")
+    lateinit var stacks: String
+
+    // The number of cards in the talon when flipping it, and in a tableau when moving a stack.
+    @Param("3", "21")
+    var cards = 0
+
+    private lateinit var source: CardStack
+    private lateinit var target: CardStack
+    private lateinit var card: Card
+
+    @Setup
+    fun setup() {
+        val stackFactory = Positions.stackFactory(stacks)
+        source = stackFactory(0)
+        target = stackFactory(12)
+        for (i in 0 until cards) source.pushCard(Card(-1, i))
+        card = Card(-1, 51)
+    }
+
+    @Benchmark
+    fun pushAndPopCard(): Card {
+        target.pushCard(card)
+        return target.popCard()
+    }
+
+    @Benchmark
+    fun moveCardsTo(): Int {
+        source.moveCardsTo(target, cards)
+        target.moveCardsTo(source, cards)
+        return source.size
+    }
+
+    @Benchmark
+    fun pushStackToHead(): Int {
+        // Flips the talon to stock, and reverts the flip the way GameStateController.undoMove does.
+        target.pushStackToHead(source)
+        val flipped = target.popStackFromHead(cards)
+        while (flipped.size > 0) source.pushCard(flipped.popCard())
+        return source.size
+    }
+}
@@ -0,0 +1,58 @@
+package com.cdio.solitaire.benchmark
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.Move
+import com.cdio.solitaire.model.MoveType
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * performMove and isMoveLegal per MoveType, on the first position in the competition decks where the
+ * strategy plays a move of that type. performMove is measured together with undoMove, so every
+ * invocation starts from the same position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class GameStateControllerBenchmark {
+    @Param("MOVE_STACK", "MOVE_TO_FOUNDATION", "MOVE_FROM_TALON", "FLIP_TALON", "DRAW_STOCK")
+    lateinit var moveType: String
+
+    @Param("linked", "array")
+    lateinit var stacks: String
+
+    private lateinit var gsc: GameStateController
+    private lateinit var move: Move
+    private var encodedMove = EncodedMove.NONE
+
+    @Setup
+    fun setup() {
+        val (strategyController, move) = Positions.firstMoveOfType(MoveType.valueOf(moveType), Positions.stackFactory(stacks))
+        gsc = strategyController.gsc
+        this.move = move
+        encodedMove = EncodedMove.encode(
+            move.moveType,
+            move.sourceStack?.stackID ?: EncodedMove.NO_STACK,
+            move.targetStack?.stackID ?: EncodedMove.NO_STACK,
+            move.cardsMoved
+        )
+    }
+
+    @Benchmark
+    fun performAndUndoMove(): Long {
+        gsc.performMove(move)
+        gsc.undoMove()
+        return gsc.hash
+    }
+
+    @Benchmark
+    fun isMoveLegal(): Boolean {
+        return gsc.isMoveLegal(move)
+    }
+
+    @Benchmark
+    fun isEncodedMoveLegal(): Boolean {
+        return gsc.isMoveLegal(encodedMove)
+    }
+}
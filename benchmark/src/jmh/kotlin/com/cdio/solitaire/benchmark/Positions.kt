@@ -0,0 +1,78 @@
+package com.cdio.solitaire.benchmark
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.ArrayCardStack
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.CardStack
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.LinkedCardStack
+import com.cdio.solitaire.model.Move
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.simulation.CompetitionDecks
+import com.cdio.solitaire.simulation.ListDeckSource
+import com.cdio.solitaire.simulation.PhysicalTable
+
+/**
+ * Fixed positions for the benchmarks, reached by letting the strategy play a competition deck.
+ */
+object Positions {
+    val competitionDecks = ListDeckSource(CompetitionDecks.decks)
+
+    /**
+     * Plays competition deck number deckIndex until stopAt returns true for the next move, or the game
+     * ends. The move stopAt accepted is undone again, so it can be performed on the returned game.
+     * Positions where a follow-up move is due are skipped, as the strategy does not decide there.
+     * Returns null if no move was accepted.
+     */
+    fun play(
+        deckIndex: Int,
+        stackFactory: (Int) -> CardStack = ::LinkedCardStack,
+        stopAt: (moveNumber: Int, move: Move) -> Boolean
+    ): Pair<StrategyController, Move>? {
+        val strategyController = StrategyController(GameStateController(stackFactory))
+        val gsc = strategyController.gsc
+        val table = PhysicalTable()
+        val deck = IntArray(CardRegistry.CARDS)
+        competitionDecks.fillDeck(deckIndex, deck)
+        table.deal(deck)
+        val firstLayer = IntArray(7)
+        table.turnFirstLayer(firstLayer)
+        for (i in 0..6) gsc.revealCard(gsc.gameState.tableaux[i].tail!!, firstLayer[i])
+
+        for (moveNumber in 0 until 400) {
+            val followUpDue = strategyController.pendingFollowUpMove != EncodedMove.NONE
+            val move = strategyController.nextMove()
+            if (move.moveType == MoveType.GAME_WON || move.moveType == MoveType.GAME_LOST) return null
+            if (!followUpDue && stopAt(moveNumber, move)) {
+                gsc.undoMove()
+                return Pair(strategyController, move)
+            }
+            table.performMove(move)
+            if (move.cardToUpdate != null) gsc.revealCard(move.cardToUpdate!!, table.discoverCard(move.cardToUpdate!!.stackID))
+        }
+        return null
+    }
+
+    fun stackFactory(stacks: String): (Int) -> CardStack {
+        return when (stacks) {
+            "linked" -> ::LinkedCardStack
+            "array" -> ::ArrayCardStack
+            else -> throw Exception("Unknown CardStack implementation: $stacks")
+        }
+    }
+
+    /**
+     * Finds the first position, over all competition decks, where the strategy plays a move of the given type.
+     */
+    fun firstMoveOfType(
+        moveType: MoveType,
+        stackFactory: (Int) -> CardStack = ::LinkedCardStack
+    ): Pair<StrategyController, Move> {
+        for (deckIndex in 0 until competitionDecks.size) {
+            val position = play(deckIndex, stackFactory) { _, move -> move.moveType == moveType }
+            if (position != null) return position
+        }
+        throw Exception("No $moveType found in the competition decks.")
+    }
+}
@@ -0,0 +1,71 @@
+package com.cdio.solitaire.benchmark
+
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.model.PackedGameState
+import com.cdio.solitaire.simulation.SimulationRunner
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * StrategyController.nextMove on fixed positions. Before every invocation, outside the measured time,
+ * the whole position is restored with StrategyController.loadGameState, so it decides on the same
+ * position with no state left over from the last invocation; loadPosition measures the restore alone.
+ * The positions are taken after a number of moves into the first competition deck, where no follow-up
+ * move is due.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class StrategyBenchmark {
+    @Param("1", "20", "60")
+    var movesPlayed = 0
+
+    @Param("linked", "array")
+    lateinit var stacks: String
+
+    private lateinit var strategyController: StrategyController
+    private lateinit var position: PackedGameState
+
+    @Setup
+    fun setup() {
+        val (strategyController, _) = Positions.play(0, Positions.stackFactory(stacks)) { moveNumber, move ->
+            moveNumber >= movesPlayed && move.moveType != MoveType.FLIP_TALON
+        } ?: throw Exception("The game ended before move $movesPlayed.")
+        this.strategyController = strategyController
+        position = strategyController.gsc.packGameState()
+    }
+
+    @Setup(Level.Invocation)
+    fun restorePosition() {
+        strategyController.loadGameState(position)
+    }
+
+    @Benchmark
+    fun loadPosition(): Long {
+        strategyController.loadGameState(position)
+        return strategyController.gsc.hash
+    }
+
+    @Benchmark
+    fun nextMove(): Long {
+        strategyController.nextMove()
+        return strategyController.gsc.hash
+    }
+}
+
+/**
+ * Full games over the 18 competition decks on a single thread, reported per game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class FullGameBenchmark {
+    private val runner = SimulationRunner(parallelism = 1)
+
+    @Benchmark
+    @OperationsPerInvocation(18)
+    fun competitionDecks(): Long {
+        return runner.run(Positions.competitionDecks).gamesWon
+    }
+}
@@ -0,0 +1,413 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.*
+
+enum class SolverOutcome {
+    SOLVED,
+    UNSOLVABLE,
+    UNKNOWN // A limit of the search was reached first.
+}
+
+/**
+ * Result of solving a deal. solution is the shortest solution found, in the Danish notation of
+ * GameStateController.movesAsString, or empty if none was found, and solutionMoves the same moves
+ * encoded (see EncodedMove). If isComplete, the search was not
+ * cut short by a limit, so the deal is unsolvable or no shorter solution exists.
+ */
+class SolverResult(
+    val outcome: SolverOutcome,
+    val solution: String,
+    val solutionMoves: IntArray,
+    val isComplete: Boolean,
+    val nodes: Long
+) {
+    val moves: Int
+        get() = solutionMoves.size
+
+    override fun toString(): String {
+        return "$outcome in $nodes nodes" + if (outcome == SolverOutcome.SOLVED) ", $moves moves: $solution" else ""
+    }
+}
+
+/*
+ * Solver for a deal where the whole deck is known, as in DataSource or a DeckSource, or for a position
+ * without hidden cards. Tells whether it can be won by any sequence of moves, as opposed to by the
+ * strategy, which can not see the hidden cards.
+ *
+ * Depth first search on a GameStateController, with the hidden cards of the tableaux revealed from
+ * the deck when a move turns them over, and undone on the way back. The stock is revealed from the
+ * start. Moves are tried in an order that favours progress: cards to foundations, moves of whole
+ * runs, talon cards, parts of runs and cards from foundations last. Moves are only left out where
+ * another order of the same moves does as well: a run that is a whole tableau is only moved when a
+ * king could use the space, and after a card is moved down from a foundation, only a move onto it or
+ * another card down from a foundation is searched. Drawing and flipping are only searched as part
+ * of playing a talon card, see addTalonMovesAfterStockMoves. A card that no other card can need
+ * anymore (see isSafe) goes to its foundation without trying alternatives.
+ *
+ * Most deals are won without moving a part of a run other than to free the card under it for its
+ * foundation, or moving more than one card down from the foundations, so the search first leaves
+ * those moves out. If that finds no solution (or with improveSolution, a solution that may not be
+ * the shortest) it is run again with every move, on the nodes left. UNSOLVABLE thus means that no
+ * sequence of moves wins; when a limit of the search left moves out, the outcome is UNKNOWN.
+ *
+ * Positions are kept in a TranspositionTable with the ply they were reached at, and a position is
+ * not searched again. Once a solution is found the search continues for a shorter one, where a
+ * position is searched again if it is reached in fewer moves, and lines that can not beat the
+ * solution are pruned, since every card left needs at least one move. Without improveSolution the
+ * search stops at the first solution. The search stops at maxNodes, and after timeBudgetMillis unless
+ * it is NO_TIME_LIMIT.
+ */
+class DealSolver(
+    var maxNodes: Long = 1_000_000,
+    var timeBudgetMillis: Long = 5_000,
+    var improveSolution: Boolean = true,
+    tableSizeLog2: Int = 20,
+    stackFactory: (Int) -> CardStack = ::LinkedCardStack
+) {
+    private val gsc = GameStateController(stackFactory)
+    private val table = TranspositionTable(tableSizeLog2)
+    private val tableauIds = Array(7) { IntArray(7) } // The ids of the tableau cards as dealt.
+    private val moveLists = Array(MAX_PLIES) { MoveList() }
+    private val path = IntArray(MAX_PLIES)
+    private val bestPath = IntArray(MAX_PLIES)
+    private var bestLength = 0
+    private var nodes = 0L
+    private var deadline = 0L
+    private var stopped = false
+    private var pruned = false // A move was left out for a limit of the search, not because it can not help.
+    private var allMoves = false // Whether this pass searches the moves the first one leaves out.
+    private var leftOut = false // The first pass left out a legal move.
+    private val drawStock = EncodedMove.encode(MoveType.DRAW_STOCK)
+    private val flipTalon = EncodedMove.encode(MoveType.FLIP_TALON)
+    private val stockIds = IntArray(CardRegistry.CARDS) // Stock and talon in addTalonMovesAfterStockMoves.
+    private val talonIds = IntArray(CardRegistry.CARDS)
+
+    /**
+     * Solves a deck of 52 card ids, see DeckSource.
+     */
+    fun solve(deck: IntArray): SolverResult {
+        deal(deck)
+        return solveCurrentPosition { deal(deck) }
+    }
+
+    /**
+     * Solves a position without hidden cards, e.g. the end of a game.
+     */
+    fun solve(position: PackedGameState): SolverResult {
+        if (position.hiddenCards() != 0) throw Exception("The position to solve has hidden cards.")
+        gsc.loadGameState(position)
+        return solveCurrentPosition { gsc.loadGameState(position) }
+    }
+
+    /**
+     * Solves the position in gsc. restart must bring gsc back to it, to replay the solution.
+     */
+    private fun solveCurrentPosition(restart: () -> Unit): SolverResult {
+        table.clear()
+        bestLength = MAX_PLIES + 1
+        nodes = 0L
+        stopped = false
+        pruned = false
+        leftOut = false
+        deadline = if (timeBudgetMillis == NO_TIME_LIMIT) Long.MAX_VALUE else System.nanoTime() + timeBudgetMillis * 1_000_000L
+        allMoves = false
+        search(0, 0, EncodedMove.NO_STACK)
+        if (leftOut && !stopped) {
+            table.clear()
+            allMoves = true
+            search(0, 0, EncodedMove.NO_STACK)
+        }
+
+        val isComplete = !stopped && !pruned
+        if (bestLength > MAX_PLIES) {
+            val outcome = if (isComplete) SolverOutcome.UNSOLVABLE else SolverOutcome.UNKNOWN
+            return SolverResult(outcome, "", IntArray(0), isComplete, nodes)
+        }
+        restart()
+        for (ply in 0 until bestLength) play(bestPath[ply])
+        return SolverResult(SolverOutcome.SOLVED, gsc.movesAsString(), bestPath.copyOf(bestLength), isComplete, nodes)
+    }
+
+    private fun deal(deck: IntArray) {
+        if (deck.size != CardRegistry.CARDS) throw Exception("A deck must have ${CardRegistry.CARDS} cards.")
+        gsc.resetGameState()
+        var next = CardRegistry.CARDS
+        for (i in 0..6) {
+            for (j in i..6) tableauIds[j][i] = deck[--next]
+        }
+        for (j in 0..6) gsc.revealCard(gsc.gameState.tableaux[j].tail!!, tableauIds[j][j])
+        val stock = gsc.gameState.stock
+        for (i in 0 until stock.size) gsc.revealCard(stock[i], deck[i])
+    }
+
+    private fun play(move: Int) {
+        val moveToPlay = gsc.toMove(move)
+        gsc.performMove(moveToPlay)
+        val card = moveToPlay.cardToUpdate ?: return
+        if (card.stackID !in 1..7) throw Exception("Only tableau cards are hidden.")
+        gsc.revealCard(card, tableauIds[card.stackID - 1][gsc.getCardStackFromID(card.stackID).size - 1])
+    }
+
+    private fun playStockMove(): Boolean {
+        val move = if (gsc.isMoveLegal(drawStock)) drawStock else if (gsc.isMoveLegal(flipTalon)) flipTalon else return false
+        play(move)
+        return true
+    }
+
+    /**
+     * Plays a move of the search, its stock moves first, and adds its moves to path from ply.
+     * @return Int number of moves played.
+     */
+    private fun playSearchMove(move: Int, ply: Int): Int {
+        val stockMoves = EncodedMove.score(move)
+        for (i in 0 until stockMoves) {
+            playStockMove()
+            path[ply + i] = if (EncodedMove.moveType(gsc.gameState.moves.last()) == MoveType.DRAW_STOCK) drawStock else flipTalon
+        }
+        val cardMove = EncodedMove.withScore(move, 0)
+        play(cardMove)
+        path[ply + stockMoves] = cardMove
+        return stockMoves + 1
+    }
+
+    /**
+     * Searches the current position, reached in ply moves. If requiredTarget is a stackID, only moves
+     * onto it are searched, and with allMoves those of another card down from a foundation: a card
+     * moved down from a foundation is only worth it to put a card on, or to get at the card under it.
+     */
+    private fun search(ply: Int, depth: Int, requiredTarget: Int) {
+        nodes++
+        if (nodes > maxNodes || (nodes and 0x3FFL) == 0L && System.nanoTime() > deadline) stopped = true
+        if (stopped || ply + cardsLeft() >= bestLength) return
+
+        val hash = gsc.hash
+        val reachedAt = table.get(hash)
+        // Until a solution is found, a position searched before can not lead to one.
+        if (reachedAt != TranspositionTable.MISSING && (reachedAt <= ply || bestLength > MAX_PLIES)) return
+        if (requiredTarget == EncodedMove.NO_STACK) table.put(hash, ply) // Not all moves were searched otherwise.
+
+        val moves = moveLists[depth]
+        val firstPassMoves = generateMoves(moves)
+        for (i in 0 until moves.size) {
+            if (i == firstPassMoves && !allMoves) {
+                leftOut = true
+                break
+            }
+            val move = moves[i]
+            if (requiredTarget != EncodedMove.NO_STACK && EncodedMove.targetStackID(move) != requiredTarget) {
+                if (EncodedMove.moveType(move) != MoveType.MOVE_FROM_FOUNDATION) continue
+                if (!allMoves) {
+                    leftOut = true
+                    continue
+                }
+            }
+            if (ply + EncodedMove.score(move) + 1 > MAX_PLIES) {
+                pruned = true
+                continue
+            }
+            val played = playSearchMove(move, ply)
+            if (gsc.isGameWon()) {
+                if (ply + played < bestLength) {
+                    bestLength = ply + played
+                    path.copyInto(bestPath, 0, 0, bestLength)
+                }
+                if (!improveSolution) stopped = true
+            } else {
+                val fromFoundation = EncodedMove.moveType(move) == MoveType.MOVE_FROM_FOUNDATION
+                search(ply + played, depth + 1, if (fromFoundation) EncodedMove.targetStackID(move) else EncodedMove.NO_STACK)
+            }
+            repeat(played) { gsc.undoMove() }
+            if (stopped) return
+        }
+    }
+
+    private fun cardsLeft(): Int {
+        var cardsLeft = CardRegistry.CARDS
+        for (foundation in gsc.gameState.foundations) cardsLeft -= foundation.size
+        return cardsLeft
+    }
+
+    private fun addIfLegal(moves: MoveList, move: Int) {
+        if (gsc.isMoveLegal(move)) moves.add(move)
+    }
+
+    /**
+     * Fills moves with the legal moves worth searching, in the order to search them.
+     * @return Int number of moves the first pass searches; the others come after them.
+     */
+    private fun generateMoves(moves: MoveList): Int {
+        moves.clear()
+        val tableaux = gsc.gameState.tableaux
+        for (source in tableaux) {
+            val move = EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, source.stackID, cardsToMove = 1)
+            if (!gsc.isMoveLegal(move)) continue
+            if (isSafe(source.tail!!)) {
+                moves.clear()
+                moves.add(move)
+                return moves.size
+            }
+            moves.add(move)
+        }
+        addIfLegal(moves, EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, 0, cardsToMove = 1))
+
+        // Whole runs, turning over a card or emptying the tableau for a king.
+        val kingWaiting = isKingWaiting()
+        for (source in tableaux) {
+            val faceUp = source.size - source.hiddenCards()
+            if (faceUp == 0 || source.hiddenCards() == 0 && !kingWaiting) continue
+            for (target in tableaux) {
+                if (target.size == 0 && source.hiddenCards() == 0) continue // Would only swap the tableaux.
+                addIfLegal(moves, EncodedMove.encode(MoveType.MOVE_STACK, source.stackID, target.stackID, faceUp))
+            }
+        }
+        for (target in tableaux) addIfLegal(moves, EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, target.stackID, 1))
+        addTalonMovesAfterStockMoves(moves)
+        addPartsOfRuns(moves, freesForFoundation = true)
+        for (source in gsc.gameState.foundations) {
+            if (source.size == 0) continue
+            for (target in tableaux) {
+                addIfLegal(moves, EncodedMove.encode(MoveType.MOVE_FROM_FOUNDATION, source.stackID, target.stackID, 1))
+            }
+        }
+        val firstPassMoves = moves.size
+        addPartsOfRuns(moves, freesForFoundation = false)
+        return firstPassMoves
+    }
+
+    /**
+     * Adds the moves of parts of runs that free the card under them for its foundation, or the others,
+     * which can free a card for one of the other color to go on, as 8♥ leaving 9♠ for 8♦.
+     */
+    private fun addPartsOfRuns(moves: MoveList, freesForFoundation: Boolean) {
+        val tableaux = gsc.gameState.tableaux
+        for (source in tableaux) {
+            val faceUp = source.size - source.hiddenCards()
+            for (cardsToMove in 1 until faceUp) {
+                if (canGoToFoundation(source.getCardFromTail(cardsToMove + 1).id) != freesForFoundation) continue
+                for (target in tableaux) {
+                    addIfLegal(moves, EncodedMove.encode(MoveType.MOVE_STACK, source.stackID, target.stackID, cardsToMove))
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the moves of every card that can be brought to the tail of talon by drawing and flipping,
+     * in a whole round trip through stock and talon. These moves hold the number of stock moves to
+     * play before them in their score bits, since the solver does not score moves. Stock moves on
+     * their own are never searched; they only matter for the card played after them.
+     *
+     * Only one stock move is legal at a time, so the stock moves form a cycle back to the current
+     * position, of up to 184 moves for 23 cards. It is walked on the card ids in stockIds and talonIds
+     * rather than on gsc, with the rules of isMoveLegal, as it is done for every node.
+     */
+    private fun addTalonMovesAfterStockMoves(moves: MoveList) {
+        val stock = gsc.gameState.stock
+        val talon = gsc.gameState.talon
+        var stockSize = stock.size
+        var talonSize = talon.size
+        for (i in 0 until stockSize) stockIds[i] = stock[i].id
+        for (i in 0 until talonSize) talonIds[i] = talon[i].id
+        var stockMoves = 0
+        while (true) {
+            if (stockSize >= 3) {
+                repeat(3) { talonIds[talonSize++] = stockIds[--stockSize] }
+            } else if (stockSize + talonSize >= 3) {
+                // The talon turned over goes to the head of stock.
+                stockIds.copyInto(stockIds, talonSize, 0, stockSize)
+                for (i in 0 until talonSize) stockIds[i] = talonIds[talonSize - 1 - i]
+                stockSize += talonSize
+                talonSize = 0
+            } else break
+            if (++stockMoves > MAX_STOCK_MOVES) {
+                pruned = true
+                break
+            }
+            if (isBackAt(stock, talon, stockSize, talonSize)) break
+            if (talonSize == 0) continue
+            val id = talonIds[talonSize - 1]
+            if (canGoToFoundation(id))
+                moves.add(EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, 0, cardsToMove = 1, score = stockMoves))
+            for (target in gsc.gameState.tableaux) {
+                if (fitsOnTableau(id, target))
+                    moves.add(EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, target.stackID, 1, stockMoves))
+            }
+        }
+    }
+
+    /**
+     * True if the walk in stockIds and talonIds is back at the stock and talon of gsc.
+     */
+    private fun isBackAt(stock: CardStack, talon: CardStack, stockSize: Int, talonSize: Int): Boolean {
+        if (stockSize != stock.size || talonSize != talon.size) return false
+        for (i in 0 until stockSize) if (stockIds[i] != stock[i].id) return false
+        for (i in 0 until talonSize) if (talonIds[i] != talon[i].id) return false
+        return true
+    }
+
+    /**
+     * The rule of isMoveLegal for a face up card on a tableau, on card ids.
+     */
+    private fun fitsOnTableau(id: Int, target: CardStack): Boolean {
+        val targetCard = target.tail ?: return CardRegistry.rankOf(id) == Rank.KING
+        return !targetCard.isHidden() && targetCard.rank.ordinal == CardRegistry.rankOf(id).ordinal + 1 &&
+                targetCard.suit.offSuit(CardRegistry.suitOf(id))
+    }
+
+    /**
+     * True if a king is somewhere else than first in a tableau or on a foundation, so it could use an
+     * empty tableau.
+     */
+    private fun isKingWaiting(): Boolean {
+        var kingsPlaced = 0
+        for (tableau in gsc.gameState.tableaux) if (tableau.size > 0 && tableau[0].rank.ordinal == 13) kingsPlaced++
+        for (foundation in gsc.gameState.foundations) if (foundation.size == 13) kingsPlaced++
+        return kingsPlaced < 4
+    }
+
+    /**
+     * The rule of isMoveLegal for a card to its foundation, on card ids: the one with its suit, or else
+     * the first empty one.
+     */
+    private fun canGoToFoundation(id: Int): Boolean {
+        val rank = CardRegistry.rankOf(id).ordinal
+        val suit = CardRegistry.suitOf(id)
+        var anyEmpty = false
+        for (foundation in gsc.gameState.foundations) {
+            val tail = foundation.tail
+            if (tail == null) anyEmpty = true
+            else if (tail.suit == suit) return tail.rank.ordinal == rank - 1
+        }
+        return anyEmpty && rank == 1
+    }
+
+    /**
+     * A card is safe to put on its foundation if no card can need it as a target anymore: it is an
+     * ace or a two, or both cards of the opposite color one rank lower are on the foundations.
+     */
+    private fun isSafe(card: Card): Boolean {
+        val rank = card.rank.ordinal
+        if (rank <= 2) return true
+        var lowerOppositeCards = 0
+        for (foundation in gsc.gameState.foundations) {
+            val tail = foundation.tail ?: continue
+            if (tail.suit.getColor() != card.suit.getColor() && tail.rank.ordinal >= rank - 1) lowerOppositeCards++
+        }
+        return lowerOppositeCards == 2
+    }
+
+    companion object {
+        /**
+         * Longest solution searched for, in moves.
+         */
+        const val MAX_PLIES = 1000
+
+        /**
+         * Time budget of a solver limited by maxNodes only, so its results do not depend on the machine.
+         */
+        const val NO_TIME_LIMIT = 0L
+
+        // The longest round trip through stock and talon, for 23 cards, is 184 moves.
+        private const val MAX_STOCK_MOVES = 200
+    }
+}
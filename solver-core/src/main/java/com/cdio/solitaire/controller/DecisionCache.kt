@@ -0,0 +1,256 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.EncodedMove
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/*
+ * Cache of decisions made by StrategyController.chooseMove, kept on disk between runs, so positions
+ * that come up again, e.g. the openings of a deck set that is played again, cost no search.
+ *
+ * A position is keyed by its Zobrist hash. The Zobrist keys have a fixed seed and cover the stacks
+ * only, so the key is the same however and in whichever run the position was reached. An entry holds
+ * the chosen encoded move, which carries its score, and its follow-up move or NONE. Decisions depend
+ * on the strategy as well, so the file records a strategyKey, see StrategyController.strategyKey, and
+ * a file written for another strategy is not loaded. A file that is not a valid cache, e.g. one cut
+ * short by a full disk, is deleted and the cache starts out empty.
+ *
+ * At most maxEntries decisions are kept; the least recently used one is evicted first. The entries are
+ * kept in primitive arrays, so neither a lookup nor a load allocates: keys and decisions by entry
+ * index, with the indices linked from least to most recently used, and an open-addressed table of
+ * entry indices by key, probed linearly. The methods are synchronized, so one cache can be shared by
+ * the controllers of several threads.
+ *
+ * File layout, big endian: MAGIC, VERSION, strategyKey (Long), entry count (Int), then per entry the
+ * key (Long), move (Int) and follow-up move (Int), from least to most recently used.
+ */
+class DecisionCache(
+    private val file: File,
+    private val strategyKey: Long,
+    private val maxEntries: Int = 1 shl 16
+) {
+    init {
+        if (maxEntries < 1) throw Exception("maxEntries must be positive, was $maxEntries.")
+    }
+
+    private val keys = LongArray(maxEntries)
+    private val decisions = LongArray(maxEntries) // Packed as by pack.
+    private val older = IntArray(maxEntries) // Entry used just before, or NO_ENTRY.
+    private val newer = IntArray(maxEntries)
+    private var oldest = NO_ENTRY
+    private var newest = NO_ENTRY
+
+    // Entry indices by key, at most half full so probes stay short.
+    private val table = IntArray(Integer.highestOneBit(maxEntries) shl 2).apply { fill(NO_ENTRY) }
+    private val mask = table.size - 1
+
+    var hits = 0L
+        private set
+    var misses = 0L
+        private set
+
+    var size: Int = 0
+        @Synchronized get
+        private set
+
+    /**
+     * Returns the decision for the position with the given hash, packed as by pack, or MISSING.
+     */
+    @Synchronized
+    fun get(hash: Long): Long {
+        val entry = table[find(hash)]
+        if (entry == NO_ENTRY) {
+            misses++
+            return MISSING
+        }
+        hits++
+        markUsed(entry)
+        return decisions[entry]
+    }
+
+    @Synchronized
+    fun put(hash: Long, move: Int, followUpMove: Int) {
+        if (move == EncodedMove.NONE) return // No move left is cheap to find again.
+        putDecision(hash, pack(move, followUpMove))
+    }
+
+    @Synchronized
+    fun clear() {
+        table.fill(NO_ENTRY)
+        oldest = NO_ENTRY
+        newest = NO_ENTRY
+        size = 0
+    }
+
+    private fun putDecision(hash: Long, decision: Long) {
+        var slot = find(hash)
+        var entry = table[slot]
+        if (entry == NO_ENTRY) {
+            if (size < maxEntries) {
+                entry = size++
+            } else {
+                entry = oldest
+                unlink(entry)
+                removeSlot(find(keys[entry]))
+                slot = find(hash) // Removing shifts the entries after it back.
+            }
+            keys[entry] = hash
+            table[slot] = entry
+            link(entry)
+        } else markUsed(entry)
+        decisions[entry] = decision
+    }
+
+    /**
+     * Returns the slot of the table holding the entry of the key, or else the empty slot it goes in.
+     */
+    private fun find(key: Long): Int {
+        var slot = slotOf(key)
+        while (table[slot] != NO_ENTRY && keys[table[slot]] != key) slot = (slot + 1) and mask
+        return slot
+    }
+
+    private fun slotOf(key: Long): Int = (key xor (key ushr 32)).toInt() and mask
+
+    /**
+     * Empties a slot, and moves the entries after it back where their probe would stop early otherwise.
+     */
+    private fun removeSlot(removed: Int) {
+        var empty = removed
+        var slot = removed
+        while (true) {
+            slot = (slot + 1) and mask
+            val entry = table[slot]
+            if (entry == NO_ENTRY) break
+            val home = slotOf(keys[entry])
+            // The entry can move to the empty slot unless its home lies after the empty slot, cyclically.
+            if (((slot - home) and mask) >= ((slot - empty) and mask)) {
+                table[empty] = entry
+                empty = slot
+            }
+        }
+        table[empty] = NO_ENTRY
+    }
+
+    private fun markUsed(entry: Int) {
+        if (entry == newest) return
+        unlink(entry)
+        link(entry)
+    }
+
+    private fun link(entry: Int) {
+        older[entry] = newest
+        newer[entry] = NO_ENTRY
+        if (newest == NO_ENTRY) oldest = entry else newer[newest] = entry
+        newest = entry
+    }
+
+    private fun unlink(entry: Int) {
+        if (older[entry] == NO_ENTRY) oldest = newer[entry] else newer[older[entry]] = newer[entry]
+        if (newer[entry] == NO_ENTRY) newest = older[entry] else older[newer[entry]] = older[entry]
+    }
+
+    /**
+     * Reads the file into the cache, memory-mapped. A missing file, or one written for another
+     * strategy, leaves the cache as it is. A file that can not be read as a cache is deleted, and
+     * leaves the cache empty.
+     * @return Boolean is true if the file was loaded.
+     */
+    @Synchronized
+    fun load(): Boolean {
+        if (!file.isFile) return false
+        val result = try {
+            read()
+        } catch (e: IOException) {
+            CORRUPT
+        }
+        if (result == CORRUPT) {
+            clear()
+            file.delete()
+        }
+        return result == LOADED
+    }
+
+    /**
+     * Reads the entries of the file.
+     * @return Int LOADED, OTHER_STRATEGY if the file was written for another strategy or version, or
+     * CORRUPT if it is not a valid cache file.
+     */
+    private fun read(): Int {
+        RandomAccessFile(file, "r").use { raf ->
+            val channel = raf.channel
+            if (channel.size() < HEADER_BYTES) return CORRUPT
+            val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+            if (buffer.int != MAGIC) return CORRUPT
+            if (buffer.int != VERSION) return OTHER_STRATEGY
+            if (buffer.long != strategyKey) return OTHER_STRATEGY
+            val count = buffer.int
+            if (count < 0 || channel.size() != HEADER_BYTES + count.toLong() * ENTRY_BYTES) return CORRUPT
+            for (i in 0 until count) {
+                val key = buffer.long
+                putDecision(key, buffer.long)
+            }
+        }
+        return LOADED
+    }
+
+    /**
+     * Writes the cache to the file. The file is written next to it first and then renamed, so a
+     * crash never leaves a half written cache behind.
+     */
+    @Synchronized
+    fun save() {
+        val buffer = ByteBuffer.allocate(HEADER_BYTES + size * ENTRY_BYTES)
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(strategyKey).putInt(size)
+        var entry = oldest
+        while (entry != NO_ENTRY) {
+            buffer.putLong(keys[entry]).putLong(decisions[entry])
+            entry = newer[entry]
+        }
+        buffer.flip()
+
+        val temporary = File(file.path + ".tmp")
+        RandomAccessFile(temporary, "rw").use { raf ->
+            raf.setLength(0)
+            raf.channel.write(buffer)
+        }
+        if (!temporary.renameTo(file)) throw Exception("Could not replace decision cache file: ${file.path}")
+    }
+
+    companion object {
+        /**
+         * Returned by get for a position without a cached decision. No packed decision has a
+         * negative move, so this never matches one.
+         */
+        const val MISSING = -1L
+
+        private const val MAGIC = 0x53444331 // "SDC1"
+        private const val VERSION = 1
+        private const val HEADER_BYTES = 20
+        private const val ENTRY_BYTES = 16
+        private const val NO_ENTRY = -1
+
+        // Outcomes of read.
+        private const val LOADED = 0
+        private const val OTHER_STRATEGY = 1
+        private const val CORRUPT = 2
+
+        fun pack(move: Int, followUpMove: Int): Long {
+            return (move.toLong() shl 32) or (followUpMove.toLong() and 0xFFFFFFFFL)
+        }
+
+        fun move(decision: Long): Int = (decision ushr 32).toInt()
+
+        fun followUpMove(decision: Long): Int = decision.toInt()
+
+        /**
+         * Opens the cache for a file, loading it if it exists.
+         */
+        fun open(file: File, strategyKey: Long, maxEntries: Int = 1 shl 16): DecisionCache {
+            return DecisionCache(file, strategyKey, maxEntries).apply { load() }
+        }
+    }
+}
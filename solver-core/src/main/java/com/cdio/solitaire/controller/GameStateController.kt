@@ -0,0 +1,593 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.*
+import java.io.StringWriter
+
+/**
+ * Holds the gameState and performs moves on it. The stackFactory decides which CardStack
+ * implementation the game is played with.
+ */
+class GameStateController(stackFactory: (Int) -> CardStack = ::LinkedCardStack) {
+    val gameState: GameState
+
+    /**
+     * Zobrist hash of gameState, kept up to date by performMove and revealCard.
+     */
+    var hash: Long = 0L
+        private set
+
+    // The hash of each stack by stackID, hash is the XOR of them, so a stack that changed as a whole
+    // can be rehashed on its own.
+    private val stackHashes = LongArray(PackedGameState.STACKS)
+
+    // The 52 card slots of the game, allocated once and reused by resetGameState.
+    private val cards = Array(CardRegistry.CARDS) { Card(-1) }
+
+    /**
+     * Creates the initial gameState. Refer to this for cardStack IDs.
+     */
+    init {
+        val foundations = Array(4) { i -> stackFactory(i + 8) } // 8, 9, 10, 11
+        val tableaux = Array(7) { i -> stackFactory(i + 1) } // 1, 2, 3, 4, 5, 6, 7
+        val stock = stackFactory(12)
+        val talon = stackFactory(0)
+        dealOutDeck(tableaux, stock)
+        gameState = GameState(foundations, tableaux, talon, stock, MoveLog().apply { add(MoveLog.DEAL) })
+        rehashAll()
+    }
+
+    /**
+     * Deals out the (hidden) card slots in compliance with solitaire rules, starting from the last
+     * slot as if popping them off a deck.
+     */
+    private fun dealOutDeck(tableaux: Array<CardStack>, stock: CardStack) {
+        var slot = cards.size
+        for (i in 0..6) {
+            for (j in i..6) tableaux[j].pushCard(cards[--slot])
+        }
+        for (i in 0 until slot) stock.pushCard(cards[i])
+    }
+
+    /**
+     * Retrieve a cardStack using the ID. The numbering is in compliance with initial gameState.
+     */
+    fun getCardStackFromID(stackID: Int): CardStack { // Added for ease, might be deleted later
+        return when (stackID) {
+            in 1..7 -> gameState.tableaux[stackID - 1]
+            in 8..11 -> gameState.foundations[stackID - 8]
+            12 -> gameState.stock
+            0 -> gameState.talon
+            else -> throw Exception("Invalid stackID: $stackID.")
+        }
+    }
+
+    /**
+     * Encodes the current gameState in its compact form, see PackedGameState.
+     */
+    fun packGameState(): PackedGameState {
+        return PackedGameState.pack(gameState)
+    }
+
+    /**
+     * Replaces the current gameState with a decoded PackedGameState. The position is decoded into the
+     * current stacks and card slots, so nothing is allocated, and the move history starts over.
+     */
+    fun loadGameState(packedGameState: PackedGameState) {
+        packedGameState.unpackInto(gameState, cards)
+        rehashAll()
+    }
+
+    /**
+     * Computes hash and the stack hashes from scratch.
+     */
+    private fun rehashAll() {
+        hash = 0L
+        for (stackID in 0 until PackedGameState.STACKS) {
+            stackHashes[stackID] = Zobrist.hash(getCardStackFromID(stackID))
+            hash = hash xor stackHashes[stackID]
+        }
+    }
+
+    /**
+     * Recomputes the hash of a stack that changed as a whole.
+     */
+    private fun rehash(stack: CardStack) {
+        val stackHash = Zobrist.hash(stack)
+        hash = hash xor stackHashes[stack.stackID] xor stackHash
+        stackHashes[stack.stackID] = stackHash
+    }
+
+    /**
+     * Adds or removes the key of a card at a position in a stack to or from the hashes.
+     */
+    private fun toggle(card: Card, stackID: Int, position: Int) {
+        val key = Zobrist.key(card, stackID, position)
+        hash = hash xor key
+        stackHashes[stackID] = stackHashes[stackID] xor key
+    }
+
+    /**
+     * Flips the talon by pushing the talon to the head end of stock.
+     */
+    private fun flipTalon() {
+        gameState.stock.pushStackToHead(gameState.talon)
+        rehash(gameState.talon)
+        rehash(gameState.stock)
+    }
+
+    /**
+     * Reverts flipTalon by moving the given number of cards from the head of stock back to talon.
+     */
+    private fun unflipTalon(cardsToMove: Int) {
+        val stackToMove = gameState.stock.popStackFromHead(cardsToMove)
+        while (stackToMove.size > 0) gameState.talon.pushCard(stackToMove.popCard())
+        rehash(gameState.talon)
+        rehash(gameState.stock)
+    }
+
+    /**
+     * Draw 3 cards from stock. Do accounting on hiddenCards, and, if needed, signal card recognition.
+     */
+    private fun drawFromStock(): Card? {
+        if (gameState.stock.size < 3) throw Exception("EmptyStackPop: Not enough cards in stock to draw to talon.")
+        // Cannot use gsc.moveStack here, because we want to check talon.tail, not stock.tail - and move cards one at a time.
+        repeat(3) {
+            val cardToPush = gameState.stock.popCard()
+            toggle(cardToPush, 12, gameState.stock.size)
+            toggle(cardToPush, 0, gameState.talon.size)
+            gameState.talon.pushCard(cardToPush)
+        }
+        return cardToUpdate(gameState.talon)
+    }
+
+    /**
+     * If the rank of the tail card is 0 (== NA), card recognition is needed.
+     */
+    private fun cardToUpdate(stack: CardStack): Card? {
+        return if (stack.tail == null) null
+        else if (stack.tail!!.rank == Rank.NA) {
+            stack.tail
+        } else null
+    }
+
+    /**
+     * moveStack moves a stack and adds cardToUpdate information to the move object.
+     */
+    private fun moveStack(
+        sourceStack: CardStack,
+        cardsToMove: Int,
+        targetStack: CardStack
+    ): Card? {
+        val firstMoved = sourceStack.size - cardsToMove
+        for (i in 0 until cardsToMove) {
+            val card = sourceStack[firstMoved + i]
+            toggle(card, sourceStack.stackID, firstMoved + i)
+            toggle(card, targetStack.stackID, targetStack.size + i)
+        }
+        sourceStack.moveCardsTo(targetStack, cardsToMove)
+        return cardToUpdate(sourceStack)
+    }
+
+    private fun moveToFoundation(sourceStack: CardStack, sourceCard: Card): Card? {
+        return moveCard(sourceStack, getFoundation(sourceCard.suit))
+    }
+
+    private fun moveCard(sourceStack: CardStack, targetStack: CardStack): Card? {
+        return moveStack(sourceStack, 1, targetStack)
+    }
+
+    /**
+     * performMove is a fork function on moveType of the move object.
+     * It maps each moveType to their respective methods.
+     */
+    fun performMove(move: Move) {
+        var cardToUpdate: Card? = null
+        when (move.moveType) {
+            MoveType.MOVE_STACK -> {
+                move.cardsMoved = getCardPosition(move.sourceCard, move.sourceStack!!)
+                cardToUpdate = moveStack(move.sourceStack, move.cardsMoved, move.targetStack!!)
+            }
+            MoveType.MOVE_FROM_FOUNDATION,
+            MoveType.MOVE_FROM_TALON -> {
+                move.cardsMoved = 1
+                moveCard(move.sourceStack!!, move.targetStack!!)
+            }
+            MoveType.MOVE_TO_FOUNDATION -> {
+                move.cardsMoved = 1
+                move.targetStack = getFoundation(move.sourceCard!!.suit)
+                cardToUpdate = moveToFoundation(move.sourceStack!!, move.sourceCard)
+            }
+            MoveType.FLIP_TALON -> {
+                move.cardsMoved = gameState.talon.size
+                flipTalon()
+            }
+            MoveType.DRAW_STOCK -> {
+                move.cardsMoved = 3
+                drawFromStock()
+                cardToUpdate = cardToUpdate(gameState.talon)
+            }
+            MoveType.DEAL_CARDS -> throw Exception("DEAL_CARDS is not for use here.")
+            else -> {} // Do nothing for GAME_WIN and GAME_LOSS
+        }
+        move.cardToUpdate = cardToUpdate
+        gameState.moves.add(
+            MoveLog.entry(
+                move.moveType,
+                move.sourceStack?.stackID ?: EncodedMove.NO_STACK,
+                move.targetStack?.stackID ?: EncodedMove.NO_STACK,
+                move.cardsMoved,
+                move.sourceCard?.id ?: MoveLog.NO_CARD,
+                cardToUpdate != null
+            )
+        )
+    }
+
+    /**
+     * Reverts the last performed move, restoring the exact previous gameState. A card revealed after
+     * the move (its cardToUpdate) is hidden again, since it was not known before the move.
+     * @return Move that was undone.
+     */
+    fun undoMove(): Move {
+        if (gameState.moves.size == 1) throw Exception("DEAL_CARDS cannot be undone.")
+        val move = getLastMove()
+        val cardToUpdate = move.cardToUpdate
+        if (cardToUpdate != null && !cardToUpdate.isHidden()) setCard(cardToUpdate, Rank.NA, Suit.NA)
+        when (move.moveType) {
+            MoveType.MOVE_STACK,
+            MoveType.MOVE_FROM_FOUNDATION,
+            MoveType.MOVE_FROM_TALON,
+            MoveType.MOVE_TO_FOUNDATION -> moveStack(move.targetStack!!, move.cardsMoved, move.sourceStack!!)
+            MoveType.FLIP_TALON -> unflipTalon(move.cardsMoved)
+            MoveType.DRAW_STOCK -> repeat(move.cardsMoved) {
+                val cardToPush = gameState.talon.popCard()
+                toggle(cardToPush, 0, gameState.talon.size)
+                toggle(cardToPush, 12, gameState.stock.size)
+                gameState.stock.pushCard(cardToPush)
+            }
+            else -> {} // Nothing to revert for GAME_WIN and GAME_LOSS
+        }
+        gameState.moves.removeLast()
+        return move
+    }
+
+    /**
+     * Searches for the position of a card in a given cardStack, measured from the tail element.
+     */
+    private fun getCardPosition(card: Card?, stack: CardStack): Int {
+        if (card!!.stackID != stack.stackID) {
+            throw Exception("CardNotInStack: Card stackID differs from stack stackID")
+        }
+        val index = stack.indexOf(card)
+        if (index == -1) throw Exception("CardNotInStack: Card not found in stack ${stack.stackID}")
+        return stack.size - index
+    }
+
+    /**
+     * Assigns rank and suit to a card in play, typically after card recognition, and updates the hash.
+     * The reveal is logged after the last move, so replay can turn the card over again.
+     */
+    fun revealCard(card: Card, rank: Rank, suit: Suit) {
+        val position = setCard(card, rank, suit)
+        gameState.moves.addReveal(card.stackID, position, CardRegistry.idOf(rank, suit))
+    }
+
+    /**
+     * Assigns rank and suit to a card in play without logging it, and returns its position.
+     */
+    private fun setCard(card: Card, rank: Rank, suit: Suit): Int {
+        val stack = getCardStackFromID(card.stackID)
+        val position = stack.indexOf(card)
+        toggle(card, stack.stackID, position)
+        stack.revealCard(card, rank, suit)
+        toggle(card, stack.stackID, position)
+        return position
+    }
+
+    /**
+     * Assigns a card id from CardRegistry to a card in play, see revealCard(card, rank, suit).
+     */
+    fun revealCard(card: Card, id: Int) {
+        revealCard(card, CardRegistry.rankOf(id), CardRegistry.suitOf(id))
+    }
+
+    /**
+     * Creates the Move object of the last move from the move log, as it was performed.
+     */
+    fun getLastMove(): Move {
+        val entry = gameState.moves.last()
+        val moveType = EncodedMove.moveType(entry)
+        val cardsMoved = EncodedMove.cardsToMove(entry)
+        val move = when (moveType) {
+            MoveType.MOVE_STACK, MoveType.MOVE_FROM_TALON, MoveType.MOVE_FROM_FOUNDATION, MoveType.MOVE_TO_FOUNDATION -> {
+                val targetStack = getCardStackFromID(EncodedMove.targetStackID(entry))
+                Move(
+                    moveType,
+                    getCardStackFromID(EncodedMove.sourceStackID(entry)),
+                    targetStack,
+                    targetStack[targetStack.size - cardsMoved]
+                )
+            }
+            else -> Move(moveType)
+        }
+        move.cardsMoved = cardsMoved
+        if (MoveLog.isTurnedOver(entry)) {
+            move.cardToUpdate = if (moveType == MoveType.DRAW_STOCK) gameState.talon.tail else move.sourceStack!!.tail
+        }
+        return move
+    }
+
+    /**
+     * Plays the game of a move log again, from the deal up to moveCount moves including the deal, and
+     * turns over the cards that were revealed along the way. The log must be of a game started with
+     * resetGameState, as games loaded with loadGameState do not start from the deal.
+     */
+    fun replay(log: MoveLog, moveCount: Int = log.size) {
+        if (moveCount < 1 || moveCount > log.size) throw Exception("Cannot replay $moveCount of ${log.size} moves.")
+        val moves = if (log === gameState.moves) log.copy() else log
+        resetGameState()
+        var reveal = 0
+        for (index in 0 until moveCount) {
+            if (index > 0) performMove(toMove(moves[index]))
+            while (reveal < moves.revealCount && moves.revealMoveIndex(reveal) == index) {
+                val stack = getCardStackFromID(moves.revealStackID(reveal))
+                revealCard(stack[moves.revealPosition(reveal)], moves.revealId(reveal))
+                reveal++
+            }
+        }
+    }
+
+
+    /**
+     * Used to ensure consistency in tableauOrdering when performing moves.
+     */
+    private fun tableauOrdering(card: Card, targetStack: CardStack): Boolean =
+        if (targetStack.stackID !in 1..7) false
+        else when (targetStack.size) {
+            0 -> card.rank.ordinal == 13 // Only kings can go on an empty tableau
+            else -> {
+                val targetCard = targetStack.tail!!
+                val ranksMatch = targetCard.rank.ordinal - card.rank.ordinal == 1
+                val offColor = targetCard.suit.offSuit(card.suit)
+                ranksMatch && offColor
+            }
+        }
+
+    /**
+     * Assesses whether a stack move is legal.
+     */
+    private fun verifyMoveStack(move: Move): Boolean =
+        if (move.sourceStack == move.targetStack) {
+            false
+        } else if (move.moveType == MoveType.MOVE_FROM_TALON || move.sourceStack != null && move.targetStack != null) {
+            tableauOrdering(move.sourceCard!!, move.targetStack!!)
+        } else throw Exception("IllegalMoveError: You need to specify a sourceStack and targetStack.")
+
+    /**
+     * Assesses whether a move from foundation is legal.
+     */
+    private fun verifyMoveFromFoundation(move: Move): Boolean {
+        val foundation = move.sourceStack
+        if (foundation == null || move.targetStack == null)
+            throw Exception("You need to specify a sourceStack and targetStack.")
+        return if (foundation.stackID in 8..11 && foundation.tail == move.sourceCard) {
+            tableauOrdering(move.sourceCard!!, move.targetStack!!)
+        } else {
+            false
+        }
+    }
+
+    /**
+     * Assesses whether a move from talon is legal.
+     */
+    private fun verifyMoveFromTalon(move: Move): Boolean =
+        if (gameState.talon.tail != move.sourceCard) {
+            false
+        } else if (move.targetStack!!.stackID in 8..11 && getFoundation(move.sourceCard!!.suit) == move.targetStack) {
+            true
+        } else if (move.targetStack!!.stackID in 1..7) {
+            verifyMoveStack(move)
+        } else false
+
+    /**
+     * Gets the foundation which has been used for the suit. If none exist, return the first empty foundation.
+     */
+    fun getFoundation(suit: Suit): CardStack {
+        var foundation: CardStack? = null
+        for (stack in gameState.foundations) {
+            if (stack.tail == null) {
+                if (foundation == null) foundation = stack
+            } else if (stack.tail!!.suit == suit) {
+                foundation = stack
+                break
+            }
+        }
+        if (foundation == null) throw Exception("Foundation not found. This shouldn't happen. Ever. Good job.")
+        return foundation
+    }
+
+    /**
+     * Assesses whether a card can be put on its foundation.
+     */
+    private fun foundationAccepts(card: Card): Boolean {
+        return when (card.rank.ordinal) {
+            1 -> true
+            in 2..13 -> {
+                val targetStack = getFoundation(card.suit)
+                targetStack.tail != null && card.rank.ordinal - targetStack.tail!!.rank.ordinal == 1
+            }
+            else -> false
+        }
+    }
+
+    /**
+     * Assesses whether a move to foundation is legal.
+     */
+    private fun verifyMoveToFoundation(move: Move): Boolean {
+        return if (move.sourceStack!!.tail != move.sourceCard) false
+        else if (foundationAccepts(move.sourceCard!!)) {
+            move.targetStack = getFoundation(move.sourceCard.suit)
+            true
+        } else false
+    }
+
+    /**
+     * Assesses whether flipping the talon is legal.
+     */
+    private fun verifyFlipTalon(): Boolean {
+        return if (gameState.stock.size >= 3) {
+            false
+        } else gameState.stock.size + gameState.talon.size >= 3
+    }
+
+    /**
+     * Assesses whether drawing cards from stock is legal.
+     */
+    private fun verifyDrawStock(): Boolean {
+        return gameState.stock.size >= 3
+    }
+
+    /**
+     * Fork function to check if a given move is legal.
+     */
+    fun isMoveLegal(move: Move): Boolean {
+        return when (move.moveType) {
+            MoveType.MOVE_STACK -> verifyMoveStack(move)
+            MoveType.MOVE_FROM_FOUNDATION -> verifyMoveFromFoundation(move)
+            MoveType.MOVE_FROM_TALON -> verifyMoveFromTalon(move)
+            MoveType.MOVE_TO_FOUNDATION -> verifyMoveToFoundation(move)
+            MoveType.FLIP_TALON -> verifyFlipTalon()
+            MoveType.DRAW_STOCK -> verifyDrawStock()
+            MoveType.DEAL_CARDS -> throw Exception("DEAL_CARDS is reserved for initialization.")
+            MoveType.GAME_LOST -> true
+            MoveType.GAME_WON -> true
+        }
+    }
+
+    /**
+     * Checks if an encoded move (see EncodedMove) is legal without creating a Move object. The card to
+     * move is the tail of the source stack, or for MOVE_STACK the card cardsToMove from the tail.
+     */
+    fun isMoveLegal(encodedMove: Int): Boolean {
+        return when (val moveType = EncodedMove.moveType(encodedMove)) {
+            MoveType.MOVE_STACK, MoveType.MOVE_FROM_TALON, MoveType.MOVE_FROM_FOUNDATION -> {
+                val sourceStack = getCardStackFromID(EncodedMove.sourceStackID(encodedMove))
+                val targetStack = getCardStackFromID(EncodedMove.targetStackID(encodedMove))
+                val cardsToMove = if (moveType == MoveType.MOVE_STACK) EncodedMove.cardsToMove(encodedMove) else 1
+                if (sourceStack == targetStack || cardsToMove < 1 || cardsToMove > sourceStack.size) false
+                else if (moveType == MoveType.MOVE_FROM_TALON && sourceStack.stackID != 0) false
+                else if (moveType == MoveType.MOVE_FROM_FOUNDATION && sourceStack.stackID !in 8..11) false
+                else {
+                    val sourceCard = sourceStack.getCardFromTail(cardsToMove)
+                    !sourceCard.isHidden() && tableauOrdering(sourceCard, targetStack)
+                }
+            }
+            MoveType.MOVE_TO_FOUNDATION -> {
+                val sourceStack = getCardStackFromID(EncodedMove.sourceStackID(encodedMove))
+                sourceStack.tail != null && !sourceStack.tail!!.isHidden() && foundationAccepts(sourceStack.tail!!)
+            }
+            MoveType.FLIP_TALON -> verifyFlipTalon()
+            MoveType.DRAW_STOCK -> verifyDrawStock()
+            MoveType.DEAL_CARDS -> throw Exception("DEAL_CARDS is reserved for initialization.")
+            MoveType.GAME_LOST -> true
+            MoveType.GAME_WON -> true
+        }
+    }
+
+    /**
+     * Creates the Move object for an encoded move in the current gameState, e.g. to perform or show it.
+     */
+    fun toMove(encodedMove: Int): Move {
+        return when (val moveType = EncodedMove.moveType(encodedMove)) {
+            MoveType.MOVE_STACK, MoveType.MOVE_FROM_TALON, MoveType.MOVE_FROM_FOUNDATION -> {
+                val sourceStack = getCardStackFromID(EncodedMove.sourceStackID(encodedMove))
+                val cardsToMove = if (moveType == MoveType.MOVE_STACK) EncodedMove.cardsToMove(encodedMove) else 1
+                Move(
+                    moveType,
+                    sourceStack,
+                    getCardStackFromID(EncodedMove.targetStackID(encodedMove)),
+                    sourceStack.getCardFromTail(cardsToMove)
+                )
+            }
+            MoveType.MOVE_TO_FOUNDATION -> {
+                val sourceStack = getCardStackFromID(EncodedMove.sourceStackID(encodedMove))
+                Move(moveType, sourceStack, getFoundation(sourceStack.tail!!.suit), sourceStack.tail)
+            }
+            else -> Move(moveType)
+        }
+    }
+
+
+    fun getLowestBlackFoundation(): Int {
+        var blackCounter = 0
+        var lowestFoundation = 0
+        for (foundation in gameState.foundations) {
+            if (foundation.tail != null && foundation.tail!!.suit.getColor() == Color.BLACK) {
+                if (-foundation.tail!!.rank.ordinal < -lowestFoundation) {
+                    lowestFoundation = foundation.tail!!.rank.ordinal
+                }
+                blackCounter++
+            }
+        }
+        return if (blackCounter == 0 || blackCounter == 1) {
+            0
+        } else {
+            lowestFoundation
+
+        }
+    }
+
+    fun getLowestRedFoundation(): Int {
+        var redCounter = 0
+        var lowestFoundation = 0
+        for (foundation in gameState.foundations) {
+            if (foundation.tail != null && foundation.tail!!.suit.getColor() == Color.RED) {
+                if (-foundation.tail!!.rank.ordinal < -lowestFoundation) {
+                    lowestFoundation = foundation.tail!!.rank.ordinal
+                }
+                redCounter++
+            }
+        }
+        return if (redCounter == 0 || redCounter == 1) {
+            0
+        } else {
+            lowestFoundation
+        }
+    }
+
+
+    fun movesAsString(): String {
+        val writer = StringWriter()
+        gameState.moves.writeDanish(writer)
+        return writer.toString()
+    }
+
+    fun isGameWon(): Boolean {
+        for (foundation in gameState.foundations) if (foundation.size != 13) return false
+        return true
+    }
+
+    /**
+     * Starts a new game in the current stacks, reusing the card slots, so nothing is allocated.
+     */
+    fun resetGameState() {
+        gameState.talon.clear()
+        gameState.stock.clear()
+        for (stack in gameState.tableaux) stack.clear()
+        for (stack in gameState.foundations) stack.clear()
+        for (card in cards) card.reset()
+        dealOutDeck(gameState.tableaux, gameState.stock)
+        gameState.moves.clear()
+        gameState.moves.add(MoveLog.DEAL)
+        rehashAll()
+    }
+
+    fun getNumberOfHiddenCards(): Int {
+        var hiddenCards = 0
+        hiddenCards += gameState.talon.hiddenCards()
+        hiddenCards += gameState.stock.hiddenCards()
+        for (stack in gameState.tableaux) {
+            hiddenCards += stack.hiddenCards()
+        }
+        return hiddenCards
+    }
+}
@@ -0,0 +1,139 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.MoveList
+import com.cdio.solitaire.model.MoveLog
+
+/*
+ * Iterative deepening search over the known part of the game, a MovePlanner for StrategyController.
+ *
+ * Moves are generated and scored by StrategyController.getAllMoves, and performed and undone on the
+ * real gsc. The value of a line of moves is the score of its first move plus half the value of the
+ * best line after it, so a few draws that free a valuable move can be worth more than a cheaper
+ * move now. A move that uncovers a hidden card ends its line, since the search cannot know what is
+ * revealed; it is worth its score plus revealBonus, for the moves the revealed card may allow.
+ *
+ * Every iteration searches one move deeper, and the move of the deepest completed iteration is
+ * played. Depth 1 is the greedy choice of the strategy, so a move is always available.
+ */
+class LookaheadSearch(
+    private val strategyController: StrategyController,
+    var maxDepth: Int = 5,
+    var timeBudgetMillis: Long = 50,
+    var maxNodes: Long = Long.MAX_VALUE,
+    var revealBonus: Int = 10
+) : MovePlanner {
+    private val gsc = strategyController.gsc
+    private val table = TranspositionTable(16)
+    private val moveLists = Array(MAX_DEPTH) { MoveList() } // One per ply, reused.
+    private val path = LongArray(MAX_DEPTH) // Hashes of the positions on the current line.
+    private var nodes = 0L
+    private var deadline = 0L
+    private var stopped = false
+
+    /**
+     * Depth of the last completed iteration, for tuning the budget.
+     */
+    var completedDepth = 0
+        private set
+
+    override fun bestMove(): Int {
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) throw Exception("maxDepth must be in 1..$MAX_DEPTH, was $maxDepth.")
+        val rootMoves = moveLists[0]
+        rootMoves.clear()
+        strategyController.getAllMoves(rootMoves)
+        val greedy = rootMoves.indexOfBest()
+        if (greedy == -1) return EncodedMove.NONE
+
+        var best = rootMoves[greedy]
+        completedDepth = 1
+        nodes = 0L
+        stopped = false
+        deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L
+        for (depth in 2..maxDepth) {
+            table.nextGeneration()
+            val move = searchRoot(depth)
+            if (stopped) break
+            best = move
+            completedDepth = depth
+        }
+        return best
+    }
+
+    private fun searchRoot(depth: Int): Int {
+        val rootMoves = moveLists[0]
+        path[0] = gsc.hash
+        var best = EncodedMove.NONE
+        var bestValue = Int.MIN_VALUE
+        for (i in 0 until rootMoves.size) {
+            val move = rootMoves[i]
+            if (EncodedMove.isFollowUp(move)) continue
+            val value = valueOf(move, depth - 1, 0)
+            if (stopped) return EncodedMove.NONE
+            if (value > bestValue) { // Ties go to the move the strategy listed first.
+                best = move
+                bestValue = value
+            }
+        }
+        return best
+    }
+
+    /**
+     * Value of playing a move at the given ply, searching depth more moves after it.
+     */
+    private fun valueOf(move: Int, depth: Int, ply: Int): Int {
+        val score = EncodedMove.score(move)
+        gsc.performMove(gsc.toMove(move))
+        val value = if (gsc.isGameWon()) WIN
+        else if (needsRecognition()) score + revealBonus
+        else if (depth == 0 || isOnPath(gsc.hash, ply)) score
+        else score + search(depth, ply + 1) / 2
+        gsc.undoMove()
+        return value
+    }
+
+    /**
+     * Best value of the current position, searching depth moves deep.
+     */
+    private fun search(depth: Int, ply: Int): Int {
+        nodes++
+        if (nodes > maxNodes || (nodes and 0x3FFL) == 0L && System.nanoTime() > deadline) stopped = true
+        if (stopped) return 0
+
+        val hash = gsc.hash
+        if (table.getDepth(hash) >= depth) return table.get(hash)
+        path[ply] = hash
+
+        val moves = moveLists[ply]
+        moves.clear()
+        strategyController.getAllMoves(moves)
+        var bestValue = 0 // No moves left; the position is worth nothing more.
+        for (i in 0 until moves.size) {
+            val move = moves[i]
+            if (EncodedMove.isFollowUp(move)) continue
+            val value = valueOf(move, depth - 1, ply)
+            if (stopped) return 0
+            if (value > bestValue) bestValue = value
+        }
+        table.put(hash, bestValue, depth)
+        return bestValue
+    }
+
+    /**
+     * True if the last move turned over a hidden card. Moving the tail of the talon can also uncover
+     * a card that was drawn face down, without it being a cardToUpdate.
+     */
+    private fun needsRecognition(): Boolean {
+        return MoveLog.isTurnedOver(gsc.gameState.moves.last()) || gsc.gameState.talon.tail?.isHidden() == true
+    }
+
+    private fun isOnPath(hash: Long, ply: Int): Boolean {
+        for (i in 0..ply) if (path[i] == hash) return true
+        return false
+    }
+
+    companion object {
+        const val MAX_DEPTH = 32
+        const val WIN = 10_000
+    }
+}
@@ -0,0 +1,137 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.*
+import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.atomic.AtomicLongArray
+
+/*
+ * Determinized Monte Carlo planning over the hidden cards, a MovePlanner for StrategyController.
+ *
+ * The unseen cards are the 52 minus those face up in the current position. A sample deals them out
+ * at random over the hidden cards. For every sample and every candidate move from
+ * StrategyController.getAllMoves, the candidate is played on a copy of the position, followed by a
+ * playout with the plain strategy, where a hidden card takes its sampled identity when the strategy
+ * turns it over. The candidate with the best total outcome is played. Every candidate is played on
+ * the same samples, so they are compared on equal terms.
+ *
+ * Samples are played in batches of parallelism on the pool, until maxSamples or the time budget is
+ * reached, but at least one batch. The samples depend on seed and the position only, so with a time
+ * budget that is never reached the planner is deterministic.
+ */
+class MonteCarloPlanner(
+    private val strategyController: StrategyController,
+    var timeBudgetMillis: Long = 200,
+    var maxSamples: Int = 256,
+    var playoutMoves: Int = 200,
+    var seed: Long = 0L,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val pool: ForkJoinPool = ForkJoinPool.commonPool()
+) : MovePlanner {
+    private val gsc = strategyController.gsc
+    private val rootMoves = MoveList()
+    private val candidates = MoveList()
+
+    // The playout engine of each thread, reused for all its playouts.
+    private val playouts = ThreadLocal.withInitial { Playout() }
+
+    /**
+     * Number of samples played for the last decision.
+     */
+    var samplesPlayed = 0
+        private set
+
+    override fun bestMove(): Int {
+        rootMoves.clear()
+        strategyController.getAllMoves(rootMoves)
+        candidates.clear()
+        for (i in 0 until rootMoves.size) if (!EncodedMove.isFollowUp(rootMoves[i])) candidates.add(rootMoves[i])
+        samplesPlayed = 0
+        if (candidates.size <= 1) return if (candidates.isEmpty()) EncodedMove.NONE else candidates[0]
+
+        val position = gsc.packGameState()
+        val unseen = position.unseenCards()
+        val random = SplittableRandom(seed xor gsc.hash)
+        val totals = AtomicLongArray(candidates.size)
+        val deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L
+        while (samplesPlayed < maxSamples && (samplesPlayed == 0 || System.nanoTime() < deadline)) {
+            val batch = minOf(parallelism, maxSamples - samplesPlayed)
+            val tasks = ArrayList<ForkJoinTask<*>>(batch)
+            for (i in 0 until batch) {
+                val sample = shuffled(unseen, random.split())
+                tasks.add(ForkJoinTask.adapt(Runnable { playSample(position, sample, totals) }))
+            }
+            if (batch == 1) tasks[0].invoke() else pool.invoke(ForkJoinTask.adapt(Runnable { ForkJoinTask.invokeAll(tasks) }))
+            samplesPlayed += batch
+        }
+
+        var best = 0
+        for (i in 1 until candidates.size) if (totals[i] > totals[best]) best = i // Ties go to the first listed.
+        return candidates[best]
+    }
+
+    private fun playSample(position: PackedGameState, sample: IntArray, totals: AtomicLongArray) {
+        val playout = playouts.get()
+        for (i in 0 until candidates.size) totals.addAndGet(i, playout.play(position, sample, candidates[i]).toLong())
+    }
+
+    /**
+     * The engine playing out candidate moves on a copy of the position.
+     */
+    private inner class Playout {
+        val strategyController = StrategyController(weights = this@MonteCarloPlanner.strategyController.weights)
+        val gsc = strategyController.gsc
+        val sampledIds = IdentityHashMap<Card, Int>()
+
+        /**
+         * Plays a candidate move and a playout after it. Returns the number of cards on the
+         * foundations at the end, or WIN if the game was won.
+         */
+        fun play(position: PackedGameState, sample: IntArray, candidate: Int): Int {
+            strategyController.loadGameState(position)
+            sampledIds.clear()
+            var next = 0
+            for (stackID in 0 until PackedGameState.STACKS) {
+                val stack = gsc.getCardStackFromID(stackID)
+                for (i in 0 until stack.size) if (stack[i].isHidden()) sampledIds[stack[i]] = sample[next++]
+            }
+
+            val move = gsc.toMove(candidate)
+            gsc.performMove(move)
+            reveal(move)
+            for (moveNumber in 0 until playoutMoves) {
+                val playoutMove = strategyController.nextMove()
+                if (playoutMove.moveType == MoveType.GAME_WON) return WIN
+                if (playoutMove.moveType == MoveType.GAME_LOST) break
+                reveal(playoutMove)
+            }
+            var foundationCards = 0
+            for (foundation in gsc.gameState.foundations) foundationCards += foundation.size
+            return foundationCards
+        }
+
+        private fun reveal(move: Move) {
+            val card = move.cardToUpdate ?: return
+            gsc.revealCard(card, sampledIds[card] ?: throw Exception("No sampled card for the card to update."))
+        }
+    }
+
+    companion object {
+        /**
+         * Outcome of a won playout. Higher than any count of foundation cards, so a win always counts more.
+         */
+        const val WIN = 2 * CardRegistry.CARDS
+
+        private fun shuffled(cards: IntArray, random: SplittableRandom): IntArray {
+            val sample = cards.copyOf()
+            for (i in sample.size - 1 downTo 1) {
+                val j = random.nextInt(i + 1)
+                val card = sample[i]
+                sample[i] = sample[j]
+                sample[j] = card
+            }
+            return sample
+        }
+    }
+}
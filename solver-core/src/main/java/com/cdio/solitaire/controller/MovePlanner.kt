@@ -0,0 +1,13 @@
+package com.cdio.solitaire.controller
+
+/**
+ * Picks the move StrategyController plays, in place of its best scored move. Implementations look
+ * at the gsc of their StrategyController and must leave it as they found it.
+ */
+interface MovePlanner {
+    /**
+     * Returns the encoded move (see EncodedMove) to play in the current position, or
+     * EncodedMove.NONE if there is none.
+     */
+    fun bestMove(): Int
+}
@@ -0,0 +1,95 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.Card
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.PackedGameState
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
+
+/*
+ * Chooses the next move ahead of time, while the card turned over by the last move is being
+ * recognized. For every card the hidden card can turn out to be, a worker reveals it on a copy of the
+ * position and chooses the move there, on its own StrategyController from strategyFactory. The
+ * choices are kept by the hash of the position with the card revealed, so once the card is known,
+ * StrategyController looks its move up instead of choosing it.
+ *
+ * strategyFactory should make controllers that choose like the one playing the game, e.g. with the
+ * same kind of planner. speculate, await and cancel must be called from one thread, e.g. the UI thread.
+ */
+class MoveSpeculator(
+    private val strategyFactory: () -> StrategyController = { StrategyController() },
+    private val executor: ExecutorService = ForkJoinPool.commonPool()
+) {
+    /**
+     * A move chosen ahead of time, and the move to play right after it, or NONE.
+     */
+    class SpeculatedMove(val move: Int, val followUpMove: Int, internal val generation: Int)
+
+    private val results = ConcurrentHashMap<Long, SpeculatedMove>()
+    private val tasks = ArrayList<Future<*>>()
+
+    // Raised by cancel. Tasks that are already running are not stopped by cancel, so a result is
+    // tagged with the generation its task was started in, and results of an older one are ignored.
+    @Volatile
+    private var generation = 0
+
+    // The controller of each worker thread, reused for every card it speculates on.
+    private val workers = ThreadLocal.withInitial { strategyFactory() }
+
+    /**
+     * Starts choosing moves for every identity of a hidden card in the game of strategyController,
+     * typically the cardToUpdate of the last move. Speculation for an earlier card is cancelled.
+     */
+    fun speculate(strategyController: StrategyController, card: Card) {
+        if (!card.isHidden()) throw Exception("Only a hidden card can be speculated on.")
+        cancel()
+        if (strategyController.pendingFollowUpMove != EncodedMove.NONE) return // Decided already.
+        val gsc = strategyController.gsc
+        val position = gsc.packGameState()
+        val stackID = card.stackID
+        val index = gsc.getCardStackFromID(stackID).indexOf(card)
+        val generation = generation
+        for (id in position.unseenCards()) {
+            tasks.add(executor.submit { speculate(position, stackID, index, id, generation) })
+        }
+    }
+
+    private fun speculate(position: PackedGameState, stackID: Int, index: Int, id: Int, generation: Int) {
+        val strategyController = workers.get()
+        strategyController.loadGameState(position)
+        val gsc = strategyController.gsc
+        gsc.revealCard(gsc.getCardStackFromID(stackID)[index], id)
+        if (strategyController.isNextMoveForced()) return
+        val move = strategyController.chooseMove()
+        val followUpMove = if (move == EncodedMove.NONE) EncodedMove.NONE else strategyController.pendingFollowUpMove
+        if (generation == this.generation) results[gsc.hash] = SpeculatedMove(move, followUpMove, generation)
+    }
+
+    /**
+     * Returns the move chosen for the position with the given hash, or null if it is not ready.
+     */
+    fun get(hash: Long): SpeculatedMove? {
+        val result = results[hash] ?: return null
+        return if (result.generation == generation) result else null
+    }
+
+    /**
+     * Waits until a move has been chosen for every identity of the current card.
+     */
+    fun await() {
+        for (task in tasks) task.get()
+    }
+
+    /**
+     * Stops the speculation in progress and forgets all chosen moves. Tasks that are still running
+     * finish, but their moves are never returned.
+     */
+    fun cancel() {
+        generation++
+        for (task in tasks) task.cancel(false)
+        tasks.clear()
+        results.clear()
+    }
+}
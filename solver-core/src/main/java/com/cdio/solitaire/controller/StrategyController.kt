@@ -0,0 +1,557 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.*
+
+/*
+ * StrategyController is used to handle the logic behind the strategy, which is then sent to
+ * GameStateController as a Move using performMove, where GSC will then update the data accordingly.
+ *
+ * Each StrategyController plays one game on its own gsc and shares no mutable state with other
+ * instances, so simulations can run one per thread. An instance must only be used by one thread at
+ * a time. The app plays on StrategyController.instance. The candidate moves are scored by weights,
+ * see StrategyWeights.
+ */
+class StrategyController(
+    val gsc: GameStateController = GameStateController(),
+    var weights: StrategyWeights = StrategyWeights.DEFAULT
+) {
+    private val moves = MoveList() // Reused for every decision.
+    private var followUpMove = EncodedMove.NONE // Second move of the last chosen sequence, if any.
+    private var hasDecided = false
+    var gameIsWon = false
+
+    /**
+     * Counts how often each position has been reached in the current game, keyed by gsc.hash.
+     */
+    val transpositionTable = TranspositionTable()
+
+    // The positions recorded in transpositionTable in the current game, so a new game only removes
+    // those instead of clearing the whole table.
+    private var recordedPositions = LongArray(64)
+    private var recordedCount = 0
+
+    /**
+     * Optional planner used to pick moves instead of taking the best scored move, e.g. a
+     * LookaheadSearch or a MonteCarloPlanner.
+     */
+    var planner: MovePlanner? = null
+
+    /**
+     * Optional source of moves chosen ahead of time, while a card was being recognized.
+     */
+    var speculator: MoveSpeculator? = null
+
+    /**
+     * Optional cache of earlier decisions, consulted before the planner or the scoring of moves.
+     */
+    var decisionCache: DecisionCache? = null
+
+    /**
+     * Key of the decisions of this strategy for a DecisionCache: STRATEGY_VERSION and the weights.
+     * The planner is not part of it, so a cache must only be shared by controllers with the same planner.
+     */
+    val strategyKey: Long
+        get() = (STRATEGY_VERSION.toLong() shl 32) or (weights.hashCode().toLong() and 0xFFFFFFFFL)
+
+    /**
+     * Follow-up of the move last returned by chooseMove, or NONE. While it is pending, the next move
+     * is not a decision of its own.
+     */
+    val pendingFollowUpMove: Int
+        get() = followUpMove
+
+    // Once no card is hidden, the rest of the game is solved at once and played from endgameMoves.
+    // The solver is limited by nodes only, so the moves do not depend on timing. If it finds no
+    // solution, it is tried again from later positions, up to ENDGAME_ATTEMPTS and ENDGAME_GAME_NODES.
+    private val endgameSolver by lazy {
+        DealSolver(ENDGAME_NODES, DealSolver.NO_TIME_LIMIT, improveSolution = false, tableSizeLog2 = 16)
+    }
+    private val endgameMoves = MoveList()
+    private var endgameNext = 0
+    private var endgameHash = 0L // gsc.hash the next endgame move was planned for.
+    private var endgameAttemptHash = 0L // gsc.hash the endgame was last tried at.
+    private var endgameAttempts = 0
+    private var endgameNodesLeft = ENDGAME_GAME_NODES
+    private val drawStock = EncodedMove.encode(MoveType.DRAW_STOCK)
+    private val flipTalon = EncodedMove.encode(MoveType.FLIP_TALON)
+
+    fun nextMove(): Move {
+
+        var move = decideMove()
+        if (move.moveType == MoveType.FLIP_TALON && isStockCycle())
+            move = Move(MoveType.GAME_LOST)
+        gsc.performMove(move)
+        if (endgameNext < endgameMoves.size) endgameHash = gsc.hash
+        recordPosition()
+        return move
+    }
+
+    /**
+     * Checks if a pass through the stock ended in a position the game has been in before, after any
+     * number of passes. The strategy decides by the position only, so it would play the same passes
+     * again and again. The current position was recorded when it was reached, so it counts once.
+     * @return Boolean is true if the game can not progress any further.
+     */
+    private fun isStockCycle(): Boolean {
+        return timesVisited(gsc.hash) > 1
+    }
+
+    private fun recordPosition() {
+        val timesVisited = timesVisited(gsc.hash)
+        transpositionTable.put(gsc.hash, minOf(timesVisited + 1, Short.MAX_VALUE.toInt()))
+        if (timesVisited == 0) {
+            if (recordedCount == recordedPositions.size) recordedPositions = recordedPositions.copyOf(recordedCount * 2)
+            recordedPositions[recordedCount++] = gsc.hash
+        }
+    }
+
+    /**
+     * Returns how many times the position with the given hash has been reached in the current game.
+     */
+    fun timesVisited(hash: Long): Int {
+        val timesVisited = transpositionTable.get(hash)
+        return if (timesVisited == TranspositionTable.MISSING) 0 else timesVisited
+    }
+
+
+    private fun decideMove(): Move {
+        if (gsc.isGameWon())
+            return Move(MoveType.GAME_WON)
+
+        val endgameMove = nextEndgameMove()
+        if (endgameMove != EncodedMove.NONE) {
+            followUpMove = EncodedMove.NONE
+            return gsc.toMove(endgameMove)
+        }
+
+        if (isDiscoveringStock())
+            return discoverStock()
+
+        if (followUpMove != EncodedMove.NONE) {
+            val move = followUpMove
+            followUpMove = EncodedMove.NONE
+            return gsc.toMove(move)
+        }
+
+        val speculated = speculator?.get(gsc.hash)
+        val move = if (speculated != null) {
+            followUpMove = speculated.followUpMove
+            decisionCache?.put(gsc.hash, speculated.move, speculated.followUpMove)
+            speculated.move
+        } else chooseMove()
+        if (move == EncodedMove.NONE) return Move(MoveType.GAME_LOST)
+        hasDecided = true
+        return gsc.toMove(move)
+    }
+
+    private fun isDiscoveringStock(): Boolean {
+        return (gsc.gameState.talon.hiddenCards() + gsc.gameState.stock.hiddenCards()) > 0 && hasDecided &&
+                followUpMove == EncodedMove.NONE && (gsc.gameState.talon.size + gsc.gameState.stock.size) % 3 != 0
+    }
+
+    /**
+     * True if the next move is decided without a choice: the game is won, the endgame is played,
+     * the stock is being discovered or a follow-up move is due.
+     */
+    internal fun isNextMoveForced(): Boolean {
+        return gsc.isGameWon() || gsc.getNumberOfHiddenCards() == 0 || followUpMove != EncodedMove.NONE || isDiscoveringStock()
+    }
+
+    /**
+     * Chooses a move in the current position, from the decision cache if it has a legal one, else with
+     * the planner if there is one, else the best scored move, whose follow-up move is kept in
+     * followUpMove. A cached move can be illegal if two positions share a hash.
+     * @return Int encoded move, or NONE if there are no moves left.
+     */
+    internal fun chooseMove(): Int {
+        val decisionCache = decisionCache ?: return decideNewMove()
+        val decision = decisionCache.get(gsc.hash)
+        if (decision != DecisionCache.MISSING && gsc.isMoveLegal(DecisionCache.move(decision))) {
+            followUpMove = DecisionCache.followUpMove(decision)
+            return DecisionCache.move(decision)
+        }
+        val move = decideNewMove()
+        decisionCache.put(gsc.hash, move, followUpMove)
+        return move
+    }
+
+    private fun decideNewMove(): Int {
+        val planner = planner
+        if (planner != null) return planner.bestMove()
+
+        moves.clear()
+        getAllMoves(moves)
+        val best = moves.indexOfBest()
+        if (best == -1) return EncodedMove.NONE
+        if (best + 1 < moves.size && EncodedMove.isFollowUp(moves[best + 1]))
+            followUpMove = moves[best + 1]
+        return moves[best]
+    }
+
+    /**
+     * Returns the next move of the solved endgame, solving it first when no card is hidden. Returns
+     * NONE if a card is still hidden, or no solution was found within the limits. When the game has
+     * left the planned line, e.g. because a card was corrected, or the last attempt found no solution,
+     * the endgame is solved again once the position differs from the one last tried.
+     */
+    private fun nextEndgameMove(): Int {
+        if (endgameNext < endgameMoves.size && gsc.hash != endgameHash) endgameMoves.clear()
+        if (endgameNext >= endgameMoves.size) {
+            if (gsc.getNumberOfHiddenCards() != 0 || endgameAttempts >= ENDGAME_ATTEMPTS) return EncodedMove.NONE
+            if (endgameAttempts > 0 && gsc.hash == endgameAttemptHash) return EncodedMove.NONE
+            endgameAttempts++
+            endgameAttemptHash = gsc.hash
+            endgameNext = 0
+            endgameHash = gsc.hash
+            if (!playEndgameToFoundations()) {
+                if (endgameNodesLeft <= 0) return EncodedMove.NONE
+                endgameSolver.maxNodes = minOf(ENDGAME_NODES, endgameNodesLeft)
+                val result = endgameSolver.solve(gsc.packGameState())
+                endgameNodesLeft -= result.nodes
+                if (result.outcome != SolverOutcome.SOLVED) return EncodedMove.NONE
+                for (move in result.solutionMoves) endgameMoves.add(move)
+            }
+        }
+        return endgameMoves[endgameNext++]
+    }
+
+    /**
+     * Plays the endgame out on gsc by putting cards on the foundations, or else the talon card on a
+     * tableau, and drawing from stock when neither can go, then undoes it again. This wins most
+     * endgames without a search.
+     * @return Boolean is true if the game was won this way, with the moves in endgameMoves.
+     */
+    private fun playEndgameToFoundations(): Boolean {
+        endgameMoves.clear()
+        var stockMovesInARow = 0
+        while (!gsc.isGameWon()) {
+            var move = EncodedMove.NONE
+            for (stackID in 0..7) {
+                val toFoundation = EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, stackID, cardsToMove = 1)
+                if (gsc.isMoveLegal(toFoundation)) {
+                    move = toFoundation
+                    break
+                }
+            }
+            // Out of the talon onto a tableau, which also changes the cards the next draws bring up.
+            for (stackID in 1..7) {
+                if (move != EncodedMove.NONE) break
+                val fromTalon = EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, stackID, 1)
+                if (gsc.isMoveLegal(fromTalon)) move = fromTalon
+            }
+            if (move == EncodedMove.NONE) {
+                move = if (gsc.isMoveLegal(drawStock)) drawStock else if (gsc.isMoveLegal(flipTalon)) flipTalon else break
+                if (++stockMovesInARow > ENDGAME_STOCK_MOVES) break // A whole round without a card to go.
+            } else stockMovesInARow = 0
+            gsc.performMove(gsc.toMove(move))
+            endgameMoves.add(move)
+        }
+        val won = gsc.isGameWon()
+        repeat(endgameMoves.size) { gsc.undoMove() }
+        if (!won) endgameMoves.clear()
+        return won
+    }
+
+    /**
+     * Function for discovering all cards in the stock.
+     * The idea is that it can be called in `getAllMoves` to check if it should be done before
+     * anything else.
+     *
+     * The function returns a move that, if performed, may help discover more cards in the stock.
+     * In order to discover new cards, we attempt to remove a card from talon, if the number of
+     * cards in stock and talon is divisible by 3.
+     *
+     * @return Move necessary for discovering more of stock.
+     */
+    private fun discoverStock(): Move {
+        // Try to draw from stock
+        val move = Move(MoveType.DRAW_STOCK)
+        if (gsc.isMoveLegal(move))
+            return move
+
+        // Nothing else to do; flip talon
+        return Move(MoveType.FLIP_TALON)
+    }
+
+    /**
+     * This function checks if a card is maximum 2 higher than the opposite foundation.
+     * @return Boolean is true if a card follows the +2 Rule, else false.
+     */
+    private fun checkFoundationPlusTwoRule(cardToCheck: Card): Boolean {
+        if (cardToCheck.suit.getColor() == Color.BLACK) {
+            if (cardToCheck.rank.ordinal <= gsc.getLowestRedFoundation() + 2) {
+                return true
+            }
+        } else if (cardToCheck.suit.getColor() == Color.RED) {
+            if (cardToCheck.rank.ordinal <= gsc.getLowestBlackFoundation() + 2) {
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * This function checks if there is a Queen in play of the opposite color of a specific King.
+     * @return Boolean is true if there is a queen of opposite color that is able to move on top of the king.
+     */
+    private fun isQueenOppositeColorAvailable(king: Card): Boolean {
+        if (king.suit.getColor() == Color.BLACK) {
+            for (column in gsc.gameState.tableaux) {
+                if (column.size != 0) {
+                    if (column.size != 0 && column.getStackHighCard()!!.rank.ordinal == 12 && column.getStackHighCard()!!.suit.getColor() == Color.RED) {
+                        return true
+                    }
+                }
+            }
+        } else {
+            for (column in gsc.gameState.tableaux) {
+                if (column.size != 0) {
+                    if (column.getStackHighCard()!!.rank.ordinal == 12 && column.getStackHighCard()!!.suit.getColor() == Color.BLACK) {
+                        return true
+                    }
+                }
+            }
+        }
+        return false
+    }
+
+    /**
+     * gets the total of empty columns plus columns where a king is bottom card in the stack ( No hidden cards).
+     * @return Int , amount of empty columns+king columns.
+     */
+    private fun getEmptyColumnsPlusColumnsWithKings(): Int {
+        var emptyColumnAndKingCounter = 0
+        for (column in gsc.gameState.tableaux) {
+            if (column.size == 0) {
+                emptyColumnAndKingCounter++
+            } else if (column.hiddenCards() == 0 && column.getStackHighCard()!!.rank.ordinal == 13) {
+                emptyColumnAndKingCounter++
+            }
+        }
+        return emptyColumnAndKingCounter
+    }
+
+    /**
+     * Gets the total of kings without its own column, I.E a King that has hidden cards under itself.
+     * @return Int , amount of kings with hidden cards.
+     */
+    private fun getKingsWithHiddenCardsInPlay(): Int {
+        var kingsWithHiddenCardsInPlay = 0
+        for (column in gsc.gameState.tableaux) {
+            if (column.size > 1) {
+                if (column.getStackHighCard()!!.rank == Rank.KING) {
+                    kingsWithHiddenCardsInPlay++
+                }
+            }
+        }
+        return kingsWithHiddenCardsInPlay
+    }
+
+    /**
+     * Checks if there is a conditional move from talon: a talon card that can go on a column, so that
+     * a stack from another column can then go on the talon card.
+     * If found, the two moves are added to the list as a sequence, and true is returned.
+     */
+    private fun addConditionalMovesFromTalonCard(
+        talonCard: Card,
+        moves: MoveList
+    ): Boolean {
+        if (gsc.gameState.talon.tail != null) {
+            for (column in gsc.gameState.tableaux) {
+                if (column.size == 0) continue
+                val columnCard = column.tail!!
+                if (talonCard.rank.ordinal + 1 == columnCard.rank.ordinal && talonCard.suit.offSuit(
+                        columnCard.suit
+                    )
+                ) {
+                    for (conditionalColumn in gsc.gameState.tableaux) {
+                        if (conditionalColumn.size == 0) continue
+                        val conditionalCard = conditionalColumn.getStackHighCard()!!
+                        if (conditionalColumn.size != 1 && conditionalCard.rank.ordinal + 1 == talonCard.rank.ordinal && conditionalCard.suit.offSuit(
+                                talonCard.suit
+                            )
+                            || (conditionalColumn.size == 1 && getKingsWithHiddenCardsInPlay() > 0) && conditionalCard.rank.ordinal + 1 == talonCard.rank.ordinal && conditionalCard.suit.offSuit(
+                                talonCard.suit
+                            )
+                        ) {
+                            //Move is possible
+                            moves.add(
+                                EncodedMove.encode(
+                                    MoveType.MOVE_FROM_TALON,
+                                    0,
+                                    column.stackID,
+                                    1,
+                                    weights.score(
+                                        StrategyWeights.CONDITIONAL_TALON_MOVE,
+                                        StrategyWeights.CONDITIONAL_TALON_MOVE_PER_HIDDEN,
+                                        conditionalColumn.hiddenCards()
+                                    )
+                                )
+                            )
+                            moves.add(EncodedMove.asFollowUp(stackMove(conditionalColumn, column, 0)))
+                            return true
+                        }
+                    }
+                }
+            }
+        }
+        return false
+    }
+
+    /**
+     * Encodes moving the revealed part of a column, starting at its high card.
+     */
+    private fun stackMove(column: CardStack, targetColumn: CardStack, score: Int): Int {
+        return EncodedMove.encode(
+            MoveType.MOVE_STACK,
+            column.stackID,
+            targetColumn.stackID,
+            column.size - column.hiddenCards(),
+            score
+        )
+    }
+
+    /**
+     * This adds all candidate moves to the list as encoded moves, scored by how valuable the move (or
+     * sequence of moves) is. The second move of a sequence follows the first, marked as a follow-up.
+     */
+    internal fun getAllMoves(moves: MoveList) {
+        val talon = gsc.gameState.talon
+        val stock = gsc.gameState.stock
+        //Possible moves from Talon to foundation.
+
+        if (talon.size != 0) {
+            val move = EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, 0, cardsToMove = 1)
+
+            if (gsc.isMoveLegal(move) && checkFoundationPlusTwoRule(talon.tail!!)) {
+                moves.add(EncodedMove.withScore(move, weights[StrategyWeights.TALON_TO_FOUNDATION_SAFE]))
+            } else if (gsc.isMoveLegal(move) && (stock.size + talon.size) % 3 == 0) {
+                moves.add(EncodedMove.withScore(move, weights[StrategyWeights.TALON_TO_FOUNDATION]))
+            }
+        }
+        for (column in gsc.gameState.tableaux) {
+            //Possible moves from column to foundation.
+            if (column.size != 0) {
+                val move = EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, column.stackID, cardsToMove = 1)
+                if (gsc.isMoveLegal(move)) {
+                    if (checkFoundationPlusTwoRule(column.tail!!)) {
+                        moves.add(EncodedMove.withScore(move, weights[StrategyWeights.COLUMN_TO_FOUNDATION_SAFE]))
+                    } else {
+                        if (column.hiddenCards() > 0) {
+                            val score = weights.score(
+                                StrategyWeights.COLUMN_TO_FOUNDATION,
+                                StrategyWeights.COLUMN_TO_FOUNDATION_PER_HIDDEN,
+                                column.hiddenCards()
+                            )
+                            moves.add(EncodedMove.withScore(move, score))
+                        }
+                    }
+                }
+            }
+            //Possible moves from talon to a column.
+            val move = EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, column.stackID, 1)
+            if (talon.size != 0 && gsc.isMoveLegal(move)) {
+                if (talon.tail!!.rank.ordinal == 13 && isQueenOppositeColorAvailable(
+                        talon.tail!!
+                    ) || (talon.tail!!.rank.ordinal == 13 && getEmptyColumnsPlusColumnsWithKings() >= 4)
+                ) {
+                    moves.add(EncodedMove.withScore(move, weights[StrategyWeights.TALON_KING_WANTED]))
+                } else if (talon.tail!!.rank != Rank.KING) { //(talon.size + stock.size) % 3 == 0
+                    moves.add(EncodedMove.withScore(move, weights[StrategyWeights.TALON_TO_COLUMN]))
+                } else {
+                    //It is a king
+                    moves.add(EncodedMove.withScore(move, weights[StrategyWeights.TALON_KING]))
+                }
+            }
+            for (targetColumn in gsc.gameState.tableaux) {
+                //Possible moves between columns
+                if ((column.size != 0 && column.hiddenCards() > 0) || (column.size == 1 && column.getStackHighCard()!!.rank != Rank.KING)) {
+                    if (gsc.isMoveLegal(stackMove(column, targetColumn, 0))) {
+                        //If the card is a king
+                        if (column.getStackHighCard()!!.rank == Rank.KING && isQueenOppositeColorAvailable(
+                                column.getStackHighCard()!!
+                            ) ||
+                            column.getStackHighCard()!!.rank == Rank.KING && getEmptyColumnsPlusColumnsWithKings() >= 4
+                        ) {
+                            moves.add(stackMove(column, targetColumn, weights[StrategyWeights.KING_STACK_WANTED]))
+                        } else if (column.getStackHighCard()!!.rank == Rank.KING && column.size > 1) {
+                            //If a King Move can reveal a card, give it value based on hidden cards underneath.
+                            val score = weights.score(StrategyWeights.KING_STACK, StrategyWeights.KING_STACK_PER_HIDDEN, column.hiddenCards())
+                            moves.add(stackMove(column, targetColumn, score))
+                        } else if (column.getStackHighCard()!!.rank != Rank.KING) { // We do not want to move a king here.
+                            val score = weights.score(StrategyWeights.STACK_MOVE, StrategyWeights.STACK_MOVE_PER_HIDDEN, column.hiddenCards())
+                            moves.add(stackMove(column, targetColumn, score))
+                        }
+                    }
+                }
+            }
+        }
+        if (talon.tail != null) {
+            addConditionalMovesFromTalonCard(talon.tail!!, moves)
+        }
+
+        // A pass through stock that changes nothing ends the game, see isStockCycle.
+        if (stock.size >= 3) {
+            moves.add(EncodedMove.encode(MoveType.DRAW_STOCK, score = weights[StrategyWeights.DRAW_STOCK]))
+        } else if ((stock.size < 3 && (stock.size + talon.size) > 3)) {
+            moves.add(EncodedMove.encode(MoveType.FLIP_TALON, score = weights[StrategyWeights.FLIP_TALON]))
+        }
+        if (stock.size + talon.size == 3 && talon.size < 3 && stock.size != 3) {
+            moves.add(EncodedMove.encode(MoveType.FLIP_TALON, score = weights[StrategyWeights.LAST_STOCK_CARDS]))
+            moves.add(EncodedMove.asFollowUp(EncodedMove.encode(MoveType.DRAW_STOCK)))
+        } else if (stock.size == 3 && talon.size == 0) {
+            moves.add(EncodedMove.encode(MoveType.DRAW_STOCK, score = weights[StrategyWeights.LAST_STOCK_CARDS]))
+        }
+    }
+
+    fun reset() {
+        gsc.resetGameState()
+        resetStrategy()
+    }
+
+    /**
+     * Continues a game from a packed position, e.g. for a playout. The move history starts over, and
+     * the strategy continues as if it had played up to this position. Nothing is allocated, and the
+     * cost does not depend on the size of transpositionTable, so playouts can load a position each.
+     */
+    fun loadGameState(packedGameState: PackedGameState) {
+        gsc.loadGameState(packedGameState)
+        resetStrategy()
+        hasDecided = true
+    }
+
+    /**
+     * Forgets what the strategy knows of the current game. Of transpositionTable, only the positions
+     * recorded in this game are removed.
+     */
+    private fun resetStrategy() {
+        followUpMove = EncodedMove.NONE
+        hasDecided = false
+        endgameMoves.clear()
+        endgameNext = 0
+        endgameAttempts = 0
+        endgameNodesLeft = ENDGAME_GAME_NODES
+        speculator?.cancel()
+        gameIsWon = false
+        for (i in 0 until recordedCount) transpositionTable.remove(recordedPositions[i])
+        recordedCount = 0
+    }
+
+    companion object {
+        /**
+         * Version of the decision logic, part of strategyKey. Raise it whenever a change to the
+         * strategy can change a decision, so decisions cached by an older version are not used.
+         */
+        const val STRATEGY_VERSION = 1
+
+        private const val ENDGAME_NODES = 20_000L
+        private const val ENDGAME_GAME_NODES = 40_000L // Of all the attempts of a game.
+        private const val ENDGAME_ATTEMPTS = 4
+        private const val ENDGAME_STOCK_MOVES = 20 // More than a round through a full stock.
+
+        /**
+         * The game played by the app.
+         */
+        val instance = StrategyController().apply { speculator = MoveSpeculator() }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.EncodedMove
+import java.util.*
+
+/*
+ * The scores StrategyController.getAllMoves gives its candidate moves, as a vector of weights so
+ * they can be tuned, see WeightTuner. A score is a base weight, for some moves plus a weight per
+ * hidden card the move works towards revealing. DEFAULT holds the scores the strategy was written
+ * with. Weights are immutable, so one instance can be shared by the controllers of all threads.
+ */
+class StrategyWeights(values: IntArray = DEFAULT_VALUES) {
+    private val values = values.copyOf()
+
+    init {
+        if (values.size != SIZE) throw Exception("Expected $SIZE weights, got ${values.size}.")
+        for (value in values) if (value < 0 || value > EncodedMove.MAX_SCORE) throw Exception("Weight out of range: $value")
+    }
+
+    operator fun get(index: Int): Int = values[index]
+
+    /**
+     * Score of a move with the given base weight and weight per hidden card.
+     */
+    fun score(base: Int, perHiddenCard: Int, hiddenCards: Int): Int {
+        return minOf(values[base] + values[perHiddenCard] * hiddenCards, EncodedMove.MAX_SCORE)
+    }
+
+    fun toIntArray(): IntArray = values.copyOf()
+
+    /**
+     * Returns a copy with every weight moved by a normally distributed step, with standard deviation
+     * stepSize times the weight (but at least stepSize), kept in 0..MAX_SCORE.
+     */
+    fun mutate(random: Random, stepSize: Double): StrategyWeights {
+        return StrategyWeights(IntArray(SIZE) { i ->
+            val step = random.nextGaussian() * stepSize * maxOf(values[i], 1)
+            (values[i] + Math.round(step).toInt()).coerceIn(0, EncodedMove.MAX_SCORE)
+        })
+    }
+
+    override fun equals(other: Any?): Boolean {
+        return other is StrategyWeights && values.contentEquals(other.values)
+    }
+
+    override fun hashCode(): Int = values.contentHashCode()
+
+    override fun toString(): String {
+        return NAMES.indices.joinToString(", ", "[", "]") { i -> "${NAMES[i]}=${values[i]}" }
+    }
+
+    companion object {
+        const val TALON_TO_FOUNDATION_SAFE = 0
+        const val TALON_TO_FOUNDATION = 1 // Only when the stock is in step, see getAllMoves.
+        const val COLUMN_TO_FOUNDATION_SAFE = 2
+        const val COLUMN_TO_FOUNDATION = 3
+        const val COLUMN_TO_FOUNDATION_PER_HIDDEN = 4
+        const val TALON_KING_WANTED = 5 // A king with a queen to take, or with columns to spare.
+        const val TALON_TO_COLUMN = 6
+        const val TALON_KING = 7
+        const val KING_STACK_WANTED = 8
+        const val KING_STACK = 9
+        const val KING_STACK_PER_HIDDEN = 10
+        const val STACK_MOVE = 11
+        const val STACK_MOVE_PER_HIDDEN = 12
+        const val CONDITIONAL_TALON_MOVE = 13
+        const val CONDITIONAL_TALON_MOVE_PER_HIDDEN = 14
+        const val DRAW_STOCK = 15
+        const val FLIP_TALON = 16
+        const val LAST_STOCK_CARDS = 17 // Playing the last three cards of stock and talon.
+        const val SIZE = 18
+
+        val NAMES = arrayOf(
+            "talonToFoundationSafe", "talonToFoundation", "columnToFoundationSafe", "columnToFoundation",
+            "columnToFoundationPerHidden", "talonKingWanted", "talonToColumn", "talonKing", "kingStackWanted",
+            "kingStack", "kingStackPerHidden", "stackMove", "stackMovePerHidden", "conditionalTalonMove",
+            "conditionalTalonMovePerHidden", "drawStock", "flipTalon", "lastStockCards"
+        )
+
+        private val DEFAULT_VALUES = intArrayOf(49, 12, 50, 6, 1, 43, 12, 5, 44, 20, 1, 30, 2, 23, 1, 8, 8, 60)
+
+        val DEFAULT = StrategyWeights()
+    }
+}
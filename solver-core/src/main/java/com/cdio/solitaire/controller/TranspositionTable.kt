@@ -0,0 +1,93 @@
+package com.cdio.solitaire.controller
+
+/*
+ * Fixed-size hash table from Zobrist hashes to a small value, backed by primitive arrays so that
+ * storing and probing never allocates.
+ *
+ * Each slot holds the full 64 bit key and an entry packing value (16 bits, signed), depth (8 bits)
+ * and generation (8 bits). On collision an entry is replaced if it is from an older generation, or
+ * if the new entry was searched at least as deep. Generation 0 marks an empty slot.
+ */
+class TranspositionTable(sizeLog2: Int = 16) {
+    private val keys = LongArray(1 shl sizeLog2)
+    private val entries = IntArray(1 shl sizeLog2)
+    private val mask = (1 shl sizeLog2) - 1
+    private var generation = 1
+    var size = 0
+        private set
+
+    private fun slot(key: Long): Int {
+        return (key xor (key ushr 32)).toInt() and mask
+    }
+
+    private fun generationOf(entry: Int): Int = entry ushr 24
+
+    private fun depthOf(entry: Int): Int = (entry ushr 16) and 0xFF
+
+    private fun valueOf(entry: Int): Int = (entry shl 16) shr 16
+
+    fun contains(key: Long): Boolean {
+        val slot = slot(key)
+        return entries[slot] != 0 && keys[slot] == key
+    }
+
+    /**
+     * Returns the value stored for the key, or MISSING if the key is not in the table.
+     */
+    fun get(key: Long): Int {
+        val slot = slot(key)
+        return if (entries[slot] != 0 && keys[slot] == key) valueOf(entries[slot]) else MISSING
+    }
+
+    /**
+     * Returns the depth stored for the key, or -1 if the key is not in the table.
+     */
+    fun getDepth(key: Long): Int {
+        val slot = slot(key)
+        return if (entries[slot] != 0 && keys[slot] == key) depthOf(entries[slot]) else -1
+    }
+
+    /**
+     * Stores a value for the key, subject to the replacement policy.
+     * @return Boolean is true if the value was stored.
+     */
+    fun put(key: Long, value: Int, depth: Int = 0): Boolean {
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw Exception("Value out of range: $value")
+        val slot = slot(key)
+        val entry = entries[slot]
+        if (entry != 0 && keys[slot] != key && generationOf(entry) == generation && depthOf(entry) > depth)
+            return false
+        if (entry == 0) size++
+        keys[slot] = key
+        entries[slot] = (value and 0xFFFF) or (depth.coerceIn(0, 0xFF) shl 16) or (generation shl 24)
+        return true
+    }
+
+    /**
+     * Removes the entry of the key, if it is in the table.
+     */
+    fun remove(key: Long) {
+        val slot = slot(key)
+        if (entries[slot] != 0 && keys[slot] == key) {
+            entries[slot] = 0
+            size--
+        }
+    }
+
+    /**
+     * Starts a new generation, making all current entries replaceable. Call this between searches.
+     */
+    fun nextGeneration() {
+        generation = if (generation == 0xFF) 1 else generation + 1
+        if (generation == 1) clear() // Wrapped around; old generation numbers would look current.
+    }
+
+    fun clear() {
+        entries.fill(0)
+        size = 0
+    }
+
+    companion object {
+        const val MISSING = Int.MIN_VALUE
+    }
+}
@@ -0,0 +1,56 @@
+package com.cdio.solitaire.controller
+
+import com.cdio.solitaire.model.*
+import java.util.*
+
+/*
+ * Zobrist keys for hashing game states. Every (card, stack, position) triple has a random 64 bit
+ * key, and the hash of a state is the XOR of the keys of all cards in it. Moving a card therefore
+ * only costs two XORs, which lets GameStateController update the hash as moves are performed.
+ * Hidden cards all share the card code HIDDEN.
+ */
+object Zobrist {
+    private const val CARD_CODES = 53
+    private const val POSITIONS = 52
+    private const val HIDDEN = 52
+    private val keys: LongArray
+
+    init {
+        val random = Random(0x5EED_CD10L) // Fixed seed, so hashes are stable between runs.
+        keys = LongArray(CARD_CODES * PackedGameState.STACKS * POSITIONS) { random.nextLong() }
+    }
+
+    fun cardCode(card: Card): Int {
+        return if (card.isHidden()) HIDDEN else card.id
+    }
+
+    /**
+     * Key of a card at a position in a stack, where position 0 is the head of the stack.
+     */
+    fun key(cardCode: Int, stackID: Int, position: Int): Long {
+        return keys[(cardCode * PackedGameState.STACKS + stackID) * POSITIONS + position]
+    }
+
+    fun key(card: Card, stackID: Int, position: Int): Long {
+        return key(cardCode(card), stackID, position)
+    }
+
+    /**
+     * Hash of all cards in a single stack.
+     */
+    fun hash(stack: CardStack): Long {
+        var hash = 0L
+        for (position in 0 until stack.size) hash = hash xor key(stack[position], stack.stackID, position)
+        return hash
+    }
+
+    /**
+     * Computes the hash of a gameState from scratch.
+     */
+    fun hash(gameState: GameState): Long {
+        var hash = hash(gameState.talon) xor hash(gameState.stock)
+        for (stack in gameState.tableaux) hash = hash xor hash(stack)
+        for (stack in gameState.foundations) hash = hash xor hash(stack)
+        return hash
+    }
+}
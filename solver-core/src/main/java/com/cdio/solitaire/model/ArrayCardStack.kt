@@ -0,0 +1,204 @@
+package com.cdio.solitaire.model
+
+/**
+ * CardStack backed by a fixed ring buffer of 52 slots. Moving a slice between stacks and flipping
+ * the talon copy card references instead of relinking them one pop and push at a time, and nothing
+ * is allocated except by popStack and popStackFromHead, which have to return a new stack.
+ * Card.prev and Card.next are not used.
+ */
+class ArrayCardStack(override val stackID: Int) : CardStack {
+    private val cards = arrayOfNulls<Card>(CAPACITY)
+    private var first = 0 // Slot of the head card.
+    override var size: Int = 0
+        private set
+
+    // Bookkeeping for hiddenCards() and getStackHighCard(), see LinkedCardStack.
+    private var hiddenCount = 0
+    private var highIndex = -1
+
+    override val head: Card?
+        get() = if (size == 0) null else cards[first]
+
+    override val tail: Card?
+        get() = if (size == 0) null else cards[slot(size - 1)]
+
+    private fun slot(index: Int): Int {
+        val slot = first + index
+        return if (slot >= CAPACITY) slot - CAPACITY else slot
+    }
+
+    override fun pushCard(card: Card) {
+        if (size == CAPACITY) throw Exception("Stack is full, stackID: $stackID")
+        if (size == 0 || tail!!.isHidden()) highIndex = size
+        cards[slot(size)] = card
+        size++
+        if (card.isHidden()) hiddenCount++
+        card.stackID = stackID
+    }
+
+    override fun popCard(): Card {
+        if (size == 0) throw Exception("Empty stack pop.")
+        val poppedCard = cards[slot(size - 1)]!!
+        cards[slot(size - 1)] = null
+        size--
+        if (poppedCard.isHidden()) hiddenCount--
+        if (highIndex == size) highIndex = findHighIndex()
+        poppedCard.stackID = -1
+        return poppedCard
+    }
+
+    override fun pushStack(stack: CardStack) {
+        if (stack.size == 0) return
+        if (stack !is ArrayCardStack) throw Exception("Cannot push a ${stack.javaClass.simpleName} to an ArrayCardStack.")
+        stack.moveCardsTo(this, stack.size)
+    }
+
+    override fun popStack(cardsToPop: Int): ArrayCardStack {
+        if (size == 0 || size < cardsToPop) throw Exception("Empty stack pop")
+        val poppedStack = ArrayCardStack(-1)
+        moveCardsTo(poppedStack, cardsToPop)
+        return poppedStack
+    }
+
+    /**
+     * Copies the cards over in one pass, updating stackIDs and the bookkeeping of both stacks.
+     */
+    override fun moveCardsTo(targetStack: CardStack, cardsToMove: Int) {
+        if (cardsToMove == 0) return
+        if (size < cardsToMove) throw Exception("Empty stack pop")
+        if (targetStack !is ArrayCardStack) throw Exception("Cannot move cards to a ${targetStack.javaClass.simpleName}.")
+        if (targetStack.size + cardsToMove > CAPACITY) throw Exception("Stack is full, stackID: ${targetStack.stackID}")
+
+        val firstMoved = size - cardsToMove
+        // The high card of the moved cards, found the same way as findHighIndex.
+        var movedHighIndex = size - 1
+        while (movedHighIndex > firstMoved && !cards[slot(movedHighIndex - 1)]!!.isHidden()) movedHighIndex--
+        if (targetStack.size == 0 || movedHighIndex != firstMoved || targetStack.tail!!.isHidden())
+            targetStack.highIndex = targetStack.size + movedHighIndex - firstMoved
+
+        var movedHiddenCards = 0
+        for (i in firstMoved until size) {
+            val card = cards[slot(i)]!!
+            cards[slot(i)] = null
+            if (card.isHidden()) movedHiddenCards++
+            card.stackID = targetStack.stackID
+            targetStack.cards[targetStack.slot(targetStack.size + i - firstMoved)] = card
+        }
+        targetStack.size += cardsToMove
+        targetStack.hiddenCount += movedHiddenCards
+        size = firstMoved
+        hiddenCount -= movedHiddenCards
+        if (highIndex >= size) highIndex = findHighIndex()
+    }
+
+    override fun popStackFromHead(cardsToPop: Int): ArrayCardStack {
+        if (size == 0 || size < cardsToPop) throw Exception("Empty stack pop")
+        val poppedStack = ArrayCardStack(-1)
+        for (i in 0 until cardsToPop) {
+            poppedStack.pushCard(cards[first]!!)
+            cards[first] = null
+            first = slot(1)
+        }
+        size -= cardsToPop
+        hiddenCount -= poppedStack.hiddenCount
+        highIndex = if (highIndex < cardsToPop) (if (size == 0) -1 else 0) else highIndex - cardsToPop
+        return poppedStack
+    }
+
+    override fun pushStackToHead(stack: CardStack) {
+        if (stack.size == 0) {
+            throw Exception("Trying to push empty stack, stackID: " + stack.stackID.toString())
+        }
+        if (stack !is ArrayCardStack) throw Exception("Cannot push a ${stack.javaClass.simpleName} to an ArrayCardStack.")
+        if (size + stack.size > CAPACITY) throw Exception("Stack is full, stackID: $stackID")
+
+        // Prepending the cards from the head of the pushed stack onwards reverses their order.
+        val pushedCards = stack.size
+        val wasEmpty = size == 0
+        val highCardWasHead = highIndex == 0
+        for (i in 0 until pushedCards) {
+            val card = stack.cards[stack.slot(i)]!!
+            stack.cards[stack.slot(i)] = null
+            first = if (first == 0) CAPACITY - 1 else first - 1
+            cards[first] = card
+            card.stackID = stackID
+        }
+        size += pushedCards
+        hiddenCount += stack.hiddenCount
+
+        if (wasEmpty) highIndex = findHighIndex()
+        else if (highCardWasHead && !cards[slot(pushedCards - 1)]!!.isHidden()) {
+            // Nothing hidden separates the old high card from the pushed cards, so continue the walk.
+            var index = pushedCards - 1
+            while (index > 0 && !cards[slot(index - 1)]!!.isHidden()) index--
+            highIndex = index
+        } else highIndex += pushedCards
+        stack.clear()
+    }
+
+    override fun get(index: Int): Card {
+        if (index < 0 || index >= size) throw Exception("Index $index out of bounds for size $size.")
+        return cards[slot(index)]!!
+    }
+
+    override fun getCardFromTail(position: Int): Card {
+        if (position < 1 || position > size) throw Exception("Position $position out of bounds for size $size.")
+        return cards[slot(size - position)]!!
+    }
+
+    override fun indexOf(card: Card): Int {
+        for (i in size - 1 downTo 0) if (cards[slot(i)] == card) return i
+        return -1
+    }
+
+    override fun revealCard(card: Card, rank: Rank, suit: Suit) {
+        if (card.stackID != stackID) throw Exception("CardNotInStack: Card stackID differs from stack stackID")
+        val wasHidden = card.isHidden()
+        card.id = CardRegistry.idOf(rank, suit)
+        if (wasHidden && !card.isHidden()) hiddenCount--
+        else if (!wasHidden && card.isHidden()) hiddenCount++
+        highIndex = findHighIndex()
+    }
+
+    /**
+     * Walks from the tail towards the head until the card below is hidden, or the head is reached.
+     */
+    private fun findHighIndex(): Int {
+        if (size == 0) return -1
+        var index = size - 1
+        while (index > 0 && !cards[slot(index - 1)]!!.isHidden()) index--
+        return index
+    }
+
+    override fun getStackHighCard(): Card? {
+        return if (highIndex == -1) null else cards[slot(highIndex)]
+    }
+
+    override fun hiddenCards(): Int {
+        return hiddenCount
+    }
+
+    override fun clear() {
+        for (i in 0 until size) cards[slot(i)] = null
+        first = 0
+        size = 0
+        hiddenCount = 0
+        highIndex = -1
+    }
+
+    override fun toString(): String {
+        var ret = "["
+        for (i in 0 until size) {
+            ret += cards[slot(i)].toString()
+            if (i != size - 1)
+                ret += ", "
+        }
+        ret += "]"
+
+        return ret
+    }
+
+    companion object {
+        const val CAPACITY = 52
+    }
+}
@@ -57,19 +57,45 @@ enum class Rank {
     }
 }
 
-class Card(var stackID: Int, var rank: Rank = Rank.NA, var suit: Suit = Suit.NA) {
+/**
+ * A slot for a card in play: either hidden or holding one of the card ids in CardRegistry.
+ * Rank and suit are looked up from the id.
+ */
+class Card(var stackID: Int, var id: Int = CardRegistry.HIDDEN) {
     var prev: Card? = null
     var next: Card? = null
 
+    constructor(stackID: Int, rank: Rank, suit: Suit) : this(stackID, CardRegistry.idOf(rank, suit))
+
+    val rank: Rank
+        get() = CardRegistry.rankOf(id)
+
+    val suit: Suit
+        get() = CardRegistry.suitOf(id)
+
     /**
      *  Returns a copy of the card object stripped of stackID and pointers.
      */
     fun copyOf(): Card {
-        return Card(-1, this.rank, this.suit)
+        return Card(-1, id)
+    }
+
+    fun isHidden(): Boolean {
+        return id == CardRegistry.HIDDEN
+    }
+
+    /**
+     *  Empties the slot: the card becomes hidden and is detached from any stack.
+     */
+    fun reset() {
+        stackID = -1
+        id = CardRegistry.HIDDEN
+        prev = null
+        next = null
     }
 
     fun toStringDanish(): String {
-        return suit.shortDanish() + rank.ordinal.toString()
+        return CardRegistry.toStringDanish(id)
     }
 
     override fun toString(): String {
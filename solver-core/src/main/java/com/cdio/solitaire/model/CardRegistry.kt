@@ -0,0 +1,54 @@
+package com.cdio.solitaire.model
+
+/*
+ * The 52 canonical card identities. A card id is suit major in Suit order, so clubs are 0-12,
+ * diamonds 13-25, hearts 26-38 and spades 39-51, each from ace to king. HIDDEN stands for a card
+ * that has not been identified yet.
+ *
+ * Card objects are slots in a game that hold one of these ids, so comparing cards by identity is
+ * comparing ids, and looking up rank and suit never allocates.
+ */
+object CardRegistry {
+    const val HIDDEN = -1
+    const val CARDS = 52
+
+    // Indexed by id + 1, so that HIDDEN maps to NA.
+    private val ranks = Array(CARDS + 1) { i -> if (i == 0) Rank.NA else Rank.values()[(i - 1) % 13 + 1] }
+    private val suits = Array(CARDS + 1) { i -> if (i == 0) Suit.NA else Suit.values()[(i - 1) / 13 + 1] }
+    private val danishNames = Array(CARDS) { id -> suits[id + 1].shortDanish() + ranks[id + 1].ordinal }
+
+    fun rankOf(id: Int): Rank = ranks[id + 1]
+
+    fun suitOf(id: Int): Suit = suits[id + 1]
+
+    /**
+     * Returns the id of a card, or HIDDEN if rank or suit is NA.
+     */
+    fun idOf(rank: Rank, suit: Suit): Int {
+        return if (rank == Rank.NA || suit == Suit.NA) HIDDEN else (suit.ordinal - 1) * 13 + rank.ordinal - 1
+    }
+
+    /**
+     * Danish notation of a card, e.g. "K7" for the seven of clubs, as used by Card.toStringDanish.
+     */
+    fun toStringDanish(id: Int): String {
+        if (id !in 0 until CARDS) throw Exception("Invalid card id: $id")
+        return danishNames[id]
+    }
+
+    /**
+     * Parses the Danish notation of a card, e.g. "R13" for the king of diamonds.
+     */
+    fun fromStringDanish(cardString: String): Int {
+        val suit = when (cardString.first()) {
+            'K' -> 0
+            'R' -> 1
+            'H' -> 2
+            'S' -> 3
+            else -> throw Exception("Wrong format of string: $cardString")
+        }
+        val rank = cardString.substring(1).toIntOrNull() ?: throw Exception("Wrong format of string: $cardString")
+        if (rank !in 1..13) throw Exception("Wrong format of string: $cardString")
+        return suit * 13 + rank - 1
+    }
+}
@@ -0,0 +1,92 @@
+package com.cdio.solitaire.model
+
+/**
+ * A stack of cards with a head (bottom) and a tail (top). Cards are pushed and popped at the tail,
+ * except for the talon flip which pushes to the head of stock.
+ *
+ * LinkedCardStack links the cards through Card.prev and Card.next, ArrayCardStack keeps them in a
+ * ring buffer and leaves the pointers alone. Code working on stacks should therefore use get,
+ * indexOf and getCardFromTail rather than following Card.prev and Card.next. Stacks only exchange
+ * cards with stacks of the same implementation.
+ */
+interface CardStack {
+    val stackID: Int
+    val head: Card?
+    val tail: Card?
+    val size: Int
+
+    /**
+     * Standard push, pushing an element to the tail of the stack
+     */
+    fun pushCard(card: Card)
+
+    /**
+     * Standard pop, popping and returning the tail element of the stack
+     */
+    fun popCard(): Card
+
+    /**
+     * Standard push, pushing a cardStack to the tail of the stack. The pushed stack is left empty.
+     */
+    fun pushStack(stack: CardStack)
+
+    /**
+     * Standard pop, popping a stack off the tail of the stack.
+     */
+    fun popStack(cardsToPop: Int): CardStack
+
+    /**
+     * Pops a stack off the head of the stack. Used to revert a talon flip.
+     */
+    fun popStackFromHead(cardsToPop: Int): CardStack
+
+    /**
+     * Special push used for stock specifically when flipping talon. This pushes the stack to head
+     * instead of tail, in reversed order.
+     */
+    fun pushStackToHead(stack: CardStack)
+
+    /**
+     * Moves cards off the tail of this stack onto the tail of the target, keeping their order.
+     */
+    fun moveCardsTo(targetStack: CardStack, cardsToMove: Int) {
+        targetStack.pushStack(popStack(cardsToMove))
+    }
+
+    /**
+     * Gets the card at the given index measured from the head, where the head is index 0.
+     */
+    operator fun get(index: Int): Card
+
+    /**
+     * Gets the card at the given position measured from the tail, where the tail is position 1.
+     */
+    fun getCardFromTail(position: Int): Card
+
+    /**
+     * Gets the index of a card measured from the head, or -1 if the card is not in the stack.
+     */
+    fun indexOf(card: Card): Int
+
+    /**
+     * Assigns rank and suit to a card in this stack, keeping the hidden card bookkeeping up to date.
+     */
+    fun revealCard(card: Card, rank: Rank, suit: Suit)
+
+    /**
+     * Gets the first instance of a revealed card in a stack.
+     */
+    fun getStackHighCard(): Card?
+
+    fun hiddenCards(): Int
+
+    /**
+     * Empties the stack without touching the cards.
+     */
+    fun clear()
+}
+
+/**
+ * Creates the default (linked) CardStack implementation.
+ */
+fun CardStack(stackID: Int): CardStack = LinkedCardStack(stackID)
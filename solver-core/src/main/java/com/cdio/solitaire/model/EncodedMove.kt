@@ -0,0 +1,53 @@
+package com.cdio.solitaire.model
+
+/*
+ * Moves encoded in a single Int, used for move generation without allocating Move objects.
+ *
+ * Bits 0-3 hold the MoveType ordinal, bits 4-7 the source stackID, bits 8-11 the target stackID
+ * (NO_STACK if not applicable), bits 12-17 the number of cards moved and bit 18 marks a follow-up:
+ * a move that is played right after the move before it in a MoveList. Bits 20-30 hold the score,
+ * so a higher encoded value never has a lower score.
+ * The card to move is implied by the source stack, and the foundation of a MOVE_TO_FOUNDATION is
+ * resolved when the move is turned into a Move, see GameStateController.toMove.
+ */
+object EncodedMove {
+    const val NONE = -1
+    const val NO_STACK = 0xF
+    const val MAX_SCORE = 0x7FF
+    private const val FOLLOW_UP = 1 shl 18
+    private val moveTypes = MoveType.values()
+
+    fun encode(
+        moveType: MoveType,
+        sourceStackID: Int = NO_STACK,
+        targetStackID: Int = NO_STACK,
+        cardsToMove: Int = 0,
+        score: Int = 0
+    ): Int {
+        if (score < 0 || score > MAX_SCORE) throw Exception("Score out of range: $score")
+        return moveType.ordinal or (sourceStackID shl 4) or (targetStackID shl 8) or (cardsToMove shl 12) or (score shl 20)
+    }
+
+    fun moveType(move: Int): MoveType = moveTypes[move and 0xF]
+
+    fun sourceStackID(move: Int): Int = (move ushr 4) and 0xF
+
+    fun targetStackID(move: Int): Int = (move ushr 8) and 0xF
+
+    fun cardsToMove(move: Int): Int = (move ushr 12) and 0x3F
+
+    fun score(move: Int): Int = (move ushr 20) and MAX_SCORE
+
+    fun withScore(move: Int, score: Int): Int {
+        if (score < 0 || score > MAX_SCORE) throw Exception("Score out of range: $score")
+        return (move and (MAX_SCORE shl 20).inv()) or (score shl 20)
+    }
+
+    fun isFollowUp(move: Int): Boolean = move and FOLLOW_UP != 0
+
+    fun asFollowUp(move: Int): Int = move or FOLLOW_UP
+
+    fun toString(move: Int): String {
+        return "${moveType(move)}(${sourceStackID(move)} -> ${targetStackID(move)}, cards: ${cardsToMove(move)}, score: ${score(move)})"
+    }
+}
@@ -0,0 +1,281 @@
+package com.cdio.solitaire.model
+
+import kotlin.math.abs
+import kotlin.math.min
+
+/**
+ * CardStack as a doubly linked list through Card.prev and Card.next.
+ */
+class LinkedCardStack(override val stackID: Int) : CardStack {
+    override var head: Card? = null
+    override var tail: Card? = null
+    override var size: Int = 0
+
+    // Bookkeeping for hiddenCards() and getStackHighCard(), kept up to date by the push and pop methods.
+    private var hiddenCount: Int = 0
+    private var highCard: Card? = null
+
+    // Last card looked up by get(), so walking the stack by index costs O(1) per step.
+    private var cursorIndex: Int = -1
+    private var cursorCard: Card? = null
+
+    override fun pushCard(card: Card) {
+        cursorIndex = -1
+        when (size) {
+            0 -> {
+                head = card
+                tail = card
+                highCard = card
+            }
+            else -> {
+                if (tail!!.isHidden()) highCard = card
+                tail!!.next = card
+                card.prev = tail
+                tail = card
+            }
+        }
+        size++
+        if (card.isHidden()) hiddenCount++
+        card.stackID = stackID
+    }
+
+    override fun popCard(): Card {
+        cursorIndex = -1
+        val poppedCard: Card? = tail
+        when (size) {
+            0 -> throw Exception("Empty stack pop.")
+            1 -> {
+                poppedCard!!.prev = null
+                head = null
+                tail = null
+                highCard = null
+            }
+            else -> {
+                tail = poppedCard!!.prev
+                tail!!.next = null
+                poppedCard.prev = null
+                if (poppedCard == highCard) highCard = findHighCard()
+            }
+        }
+        size--
+        if (poppedCard.isHidden()) hiddenCount--
+        poppedCard.stackID = -1
+        return poppedCard
+    }
+
+    /**
+     * Reset the cardStack attributes (also used when a pop method results in an empty stack).
+     */
+    override fun clear() { // Also used to prevent faulty use of stacks considered discarded.
+        cursorIndex = -1
+        head = null
+        tail = null
+        size = 0
+        hiddenCount = 0
+        highCard = null
+    }
+
+    override fun pushStack(stack: CardStack) { // Push a CardStack to tail
+        if (stack.size == 0) return
+        if (stack !is LinkedCardStack) throw Exception("Cannot push a ${stack.javaClass.simpleName} to a LinkedCardStack.")
+        cursorIndex = -1
+        var card = stack.head
+        for (i in 1..stack.size) {
+            card!!.stackID = stackID
+            card = card.next
+        }
+
+        if (size == 0 || stack.highCard != stack.head || tail!!.isHidden()) highCard = stack.highCard
+        when (size) {
+            0 -> {
+                head = stack.head
+                tail = stack.tail
+            }
+            else -> {
+                tail!!.next = stack.head
+                stack.head!!.prev = tail
+                tail = stack.tail
+            }
+        }
+        size += stack.size
+        hiddenCount += stack.hiddenCount
+        stack.clear()
+    }
+
+    override fun popStack(cardsToPop: Int): LinkedCardStack {
+        if (size == 0 || size < cardsToPop) throw Exception("Empty stack pop")
+        cursorIndex = -1
+
+        val poppedStack = LinkedCardStack(-1)
+        if (size - cardsToPop == 0) poppedStack.pushStack(this)
+        else {
+            poppedStack.tail = tail
+            poppedStack.head = tail
+            var poppedHighCard = tail == highCard
+            var poppedHiddenCards = if (tail!!.isHidden()) 1 else 0
+            for (i in 1 until cardsToPop) {
+                poppedStack.head = poppedStack.head!!.prev
+                if (poppedStack.head == highCard) poppedHighCard = true
+                if (poppedStack.head!!.isHidden()) poppedHiddenCards++
+            }
+            tail = poppedStack.head!!.prev
+            tail!!.next = null
+            poppedStack.head!!.prev = null
+            poppedStack.size = cardsToPop
+            size -= cardsToPop
+            poppedStack.hiddenCount = poppedHiddenCards
+            hiddenCount -= poppedHiddenCards
+            poppedStack.highCard = poppedStack.findHighCard()
+            if (poppedHighCard) highCard = findHighCard()
+        }
+        return poppedStack
+    }
+
+    override fun popStackFromHead(cardsToPop: Int): LinkedCardStack {
+        if (size == 0 || size < cardsToPop) throw Exception("Empty stack pop")
+        cursorIndex = -1
+
+        val poppedStack = LinkedCardStack(-1)
+        if (size - cardsToPop == 0) poppedStack.pushStack(this)
+        else {
+            poppedStack.head = head
+            poppedStack.tail = head
+            var poppedHighCard = head == highCard
+            var poppedHiddenCards = if (head!!.isHidden()) 1 else 0
+            for (i in 1 until cardsToPop) {
+                poppedStack.tail = poppedStack.tail!!.next
+                if (poppedStack.tail == highCard) poppedHighCard = true
+                if (poppedStack.tail!!.isHidden()) poppedHiddenCards++
+            }
+            head = poppedStack.tail!!.next
+            head!!.prev = null
+            poppedStack.tail!!.next = null
+            poppedStack.size = cardsToPop
+            size -= cardsToPop
+            poppedStack.hiddenCount = poppedHiddenCards
+            hiddenCount -= poppedHiddenCards
+            poppedStack.highCard = poppedStack.findHighCard()
+            if (poppedHighCard) highCard = head
+        }
+        return poppedStack
+    }
+
+    override fun pushStackToHead(stack: CardStack) {
+        if (stack.size == 0) {
+            throw Exception("Trying to push empty stack, stackID: " + stack.stackID.toString())
+        }
+        cursorIndex = -1
+
+        val reversedStack = LinkedCardStack(-1)
+        while (stack.size > 0)
+            reversedStack.pushCard(stack.popCard())
+
+        var card = reversedStack.head
+        for (i in 1..reversedStack.size) {
+            card!!.stackID = stackID
+            card = card.next
+        }
+
+        if (size == 0) {
+            head = reversedStack.head
+            tail = reversedStack.tail
+            size = reversedStack.size
+            highCard = reversedStack.highCard
+
+        } else {
+            // The high card only moves into the pushed cards if nothing hidden separates them from it.
+            if (highCard == head && !reversedStack.tail!!.isHidden()) highCard = reversedStack.highCard
+            head!!.prev = reversedStack.tail
+            reversedStack.tail!!.next = head
+            head = reversedStack.head
+            size += reversedStack.size
+        }
+        hiddenCount += reversedStack.hiddenCount
+        stack.clear()
+    }
+
+    override fun get(index: Int): Card {
+        if (index < 0 || index >= size) throw Exception("Index $index out of bounds for size $size.")
+        var card: Card
+        var i: Int
+        if (cursorIndex != -1 && abs(index - cursorIndex) < min(index, size - 1 - index)) {
+            card = cursorCard!!
+            i = cursorIndex
+        } else if (index < size - 1 - index) {
+            card = head!!
+            i = 0
+        } else {
+            card = tail!!
+            i = size - 1
+        }
+        while (i < index) {
+            card = card.next!!
+            i++
+        }
+        while (i > index) {
+            card = card.prev!!
+            i--
+        }
+        cursorIndex = index
+        cursorCard = card
+        return card
+    }
+
+    override fun getCardFromTail(position: Int): Card {
+        if (position < 1 || position > size) throw Exception("Position $position out of bounds for size $size.")
+        var card = tail!!
+        for (i in 1 until position) card = card.prev!!
+        return card
+    }
+
+    override fun indexOf(card: Card): Int {
+        var cursor = tail
+        var index = size - 1
+        while (cursor != null) {
+            if (cursor == card) return index
+            cursor = cursor.prev
+            index--
+        }
+        return -1
+    }
+
+    override fun revealCard(card: Card, rank: Rank, suit: Suit) {
+        if (card.stackID != stackID) throw Exception("CardNotInStack: Card stackID differs from stack stackID")
+        val wasHidden = card.isHidden()
+        card.id = CardRegistry.idOf(rank, suit)
+        if (wasHidden && !card.isHidden()) hiddenCount--
+        else if (!wasHidden && card.isHidden()) hiddenCount++
+        highCard = findHighCard()
+    }
+
+    /**
+     * Walks from the tail towards the head until the card below is hidden, or the head is reached.
+     */
+    private fun findHighCard(): Card? {
+        var card = tail ?: return null
+        while (card.prev != null && !card.prev!!.isHidden()) card = card.prev!!
+        return card
+    }
+
+    override fun getStackHighCard(): Card? {
+        return highCard // Can be null
+    }
+
+    override fun hiddenCards(): Int {
+        return hiddenCount
+    }
+
+    override fun toString(): String {
+        var ret = "["
+        var cursor = head
+        while (cursor != null) {
+            ret += cursor.toString()
+            if (cursor.next != null)
+                ret += ", "
+            cursor = cursor.next
+        }
+        ret += "]"
+
+        return ret
+    }
+}
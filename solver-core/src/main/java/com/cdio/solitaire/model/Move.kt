@@ -20,6 +20,7 @@ class Move(
     val sourceCard: Card? = null,
 ) { // Needed for toString() method, and for checking validity
     var cardToUpdate: Card? = null
+    var cardsMoved: Int = 0 // Set by performMove, used by undoMove.
     var prev: Move? = null
     var next: Move? = null
 
@@ -0,0 +1,42 @@
+package com.cdio.solitaire.model
+
+/**
+ * Reusable list of encoded moves (see EncodedMove). Clearing keeps the backing array, so a list can
+ * be refilled for every decision without allocating.
+ */
+class MoveList(capacity: Int = 128) {
+    private var moves = IntArray(capacity)
+    var size: Int = 0
+        private set
+
+    fun add(move: Int) {
+        if (size == moves.size) moves = moves.copyOf(size * 2)
+        moves[size++] = move
+    }
+
+    operator fun get(index: Int): Int {
+        if (index < 0 || index >= size) throw Exception("Index $index out of bounds for size $size.")
+        return moves[index]
+    }
+
+    fun clear() {
+        size = 0
+    }
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    /**
+     * Returns the index of the move with the highest score, skipping follow-up moves. Ties go to the
+     * move added first. Returns -1 if there are no moves.
+     */
+    fun indexOfBest(): Int {
+        var best = -1
+        for (i in 0 until size) {
+            if (EncodedMove.isFollowUp(moves[i])) continue
+            if (best == -1 || EncodedMove.score(moves[i]) > EncodedMove.score(moves[best])) best = i
+        }
+        return best
+    }
+}
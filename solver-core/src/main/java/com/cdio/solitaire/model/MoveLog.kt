@@ -0,0 +1,167 @@
+package com.cdio.solitaire.model
+
+import java.io.*
+
+/*
+ * Append-only log of the moves of a game and of the cards revealed along the way, kept in primitive
+ * arrays, so the history of a long game costs a few bytes per move and holds no Cards or CardStacks.
+ * GameStateController appends to it in performMove and revealCard, and can replay it from the deal.
+ *
+ * A move entry is the move as performed, encoded as in EncodedMove: type, source, target (for
+ * MOVE_TO_FOUNDATION the foundation the card went to) and the number of cards moved. In place of the
+ * score it holds the id of the moved card, or NO_CARD, and TURNED_OVER marks a move after which a card
+ * needed recognition. A reveal entry holds the index of the move it followed, and the stack, position
+ * and id of the revealed card.
+ */
+class MoveLog {
+    private var moves = IntArray(INITIAL_CAPACITY)
+    private var reveals = LongArray(INITIAL_CAPACITY)
+
+    /**
+     * Number of moves, including the DEAL_CARDS entry a game starts with.
+     */
+    var size: Int = 0
+        private set
+    var revealCount: Int = 0
+        private set
+
+    fun add(entry: Int) {
+        if (size == moves.size) moves = moves.copyOf(size * 2)
+        moves[size++] = entry
+    }
+
+    /**
+     * Records that a card was revealed after the last move.
+     */
+    fun addReveal(stackID: Int, position: Int, id: Int) {
+        if (size == 0) throw Exception("A card can only be revealed after the deal.")
+        if (revealCount == reveals.size) reveals = reveals.copyOf(revealCount * 2)
+        reveals[revealCount++] = ((size - 1).toLong() shl 32) or (stackID.toLong() shl 16) or
+                (position.toLong() shl 8) or (id and 0xFF).toLong()
+    }
+
+    operator fun get(index: Int): Int {
+        if (index < 0 || index >= size) throw Exception("Index $index out of bounds for size $size.")
+        return moves[index]
+    }
+
+    fun last(): Int {
+        return get(size - 1)
+    }
+
+    /**
+     * Removes the last move, and the reveals that followed it.
+     */
+    fun removeLast() {
+        if (size == 0) throw Exception("The move log is empty.")
+        size--
+        while (revealCount > 0 && revealMoveIndex(revealCount - 1) >= size) revealCount--
+    }
+
+    fun clear() {
+        size = 0
+        revealCount = 0
+    }
+
+    fun revealMoveIndex(reveal: Int): Int = (reveals[reveal] ushr 32).toInt()
+
+    fun revealStackID(reveal: Int): Int = (reveals[reveal] ushr 16).toInt() and 0xFF
+
+    fun revealPosition(reveal: Int): Int = (reveals[reveal] ushr 8).toInt() and 0xFF
+
+    /**
+     * Id of the revealed card, or CardRegistry.HIDDEN if it was turned back.
+     */
+    fun revealId(reveal: Int): Int = reveals[reveal].toByte().toInt()
+
+    fun copy(): MoveLog {
+        val copy = MoveLog()
+        copy.moves = moves.copyOf(maxOf(size, INITIAL_CAPACITY))
+        copy.reveals = reveals.copyOf(maxOf(revealCount, INITIAL_CAPACITY))
+        copy.size = size
+        copy.revealCount = revealCount
+        return copy
+    }
+
+    /**
+     * Writes the moves in Danish notation, e.g. "K7-3,T,S,R1-F,", as GameStateController.movesAsString.
+     */
+    fun writeDanish(writer: Writer) {
+        for (i in 0 until size) {
+            val entry = moves[i]
+            when (EncodedMove.moveType(entry)) {
+                MoveType.MOVE_STACK, MoveType.MOVE_FROM_TALON, MoveType.MOVE_FROM_FOUNDATION -> {
+                    writer.write(CardRegistry.toStringDanish(cardId(entry)))
+                    writer.write("-")
+                    writer.write(EncodedMove.targetStackID(entry).toString())
+                    writer.write(",")
+                }
+                MoveType.MOVE_TO_FOUNDATION -> {
+                    writer.write(CardRegistry.toStringDanish(cardId(entry)))
+                    writer.write("-F,")
+                }
+                MoveType.DRAW_STOCK -> writer.write("T,")
+                MoveType.FLIP_TALON -> writer.write("S,")
+                else -> {}
+            }
+        }
+        writer.flush()
+    }
+
+    /**
+     * Writes the log in binary, to be read back with readFrom.
+     */
+    fun writeTo(output: OutputStream) {
+        val data = DataOutputStream(output)
+        data.writeInt(MAGIC)
+        data.writeInt(size)
+        for (i in 0 until size) data.writeInt(moves[i])
+        data.writeInt(revealCount)
+        for (i in 0 until revealCount) data.writeLong(reveals[i])
+        data.flush()
+    }
+
+    companion object {
+        /**
+         * Card id of moves that do not move a card.
+         */
+        const val NO_CARD = 0x3F
+        private const val TURNED_OVER = 1 shl 19
+        private const val INITIAL_CAPACITY = 64
+        private const val MAGIC = 0x4D4C4F47 // "MLOG"
+
+        val DEAL = entry(MoveType.DEAL_CARDS)
+
+        fun entry(
+            moveType: MoveType,
+            sourceStackID: Int = EncodedMove.NO_STACK,
+            targetStackID: Int = EncodedMove.NO_STACK,
+            cardsMoved: Int = 0,
+            cardId: Int = NO_CARD,
+            turnedOver: Boolean = false
+        ): Int {
+            val card = if (cardId in 0 until CardRegistry.CARDS) cardId else NO_CARD
+            val move = EncodedMove.encode(moveType, sourceStackID, targetStackID, cardsMoved, card)
+            return if (turnedOver) move or TURNED_OVER else move
+        }
+
+        fun cardId(entry: Int): Int = EncodedMove.score(entry) and NO_CARD
+
+        /**
+         * True if a card needed recognition after the move.
+         */
+        fun isTurnedOver(entry: Int): Boolean = entry and TURNED_OVER != 0
+
+        fun readFrom(input: InputStream): MoveLog {
+            val data = DataInputStream(input)
+            if (data.readInt() != MAGIC) throw Exception("Not a move log.")
+            val log = MoveLog()
+            repeat(data.readInt()) { log.add(data.readInt()) }
+            val revealCount = data.readInt()
+            log.reveals = LongArray(maxOf(revealCount, INITIAL_CAPACITY))
+            for (i in 0 until revealCount) log.reveals[i] = data.readLong()
+            log.revealCount = revealCount
+            return log
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.cdio.solitaire.model
+
+/**
+ * Immutable, compact encoding of a GameState, meant for search and simulation where copying a
+ * node should cost a few words instead of a graph of Card objects.
+ *
+ * Layout: the first 13 bytes hold the stack sizes indexed by stackID (talon 0, tableaux 1-7,
+ * foundations 8-11, stock 12). The remaining bytes hold the cards of each stack in stackID order,
+ * from head to tail. A card byte is the card id (see CardRegistry) of a face up card, or HIDDEN_CARD
+ * for a card that is not yet revealed; the identity of a hidden card is not part of the encoding.
+ */
+class PackedGameState private constructor(private val bytes: ByteArray) {
+
+    fun stackSize(stackID: Int): Int {
+        return bytes[stackID].toInt()
+    }
+
+    /**
+     * Returns the card byte at the given index of a stack, counted from the head.
+     */
+    fun cardAt(stackID: Int, index: Int): Int {
+        if (index < 0 || index >= stackSize(stackID)) throw Exception("Index $index out of bounds in stack $stackID.")
+        return bytes[stackOffset(stackID) + index].toInt()
+    }
+
+    fun hiddenCards(): Int {
+        var hiddenCards = 0
+        for (i in STACKS until bytes.size) if (isHidden(bytes[i].toInt())) hiddenCards++
+        return hiddenCards
+    }
+
+    /**
+     * Returns the ids of the cards that are not face up in this position, in id order. These are the
+     * cards a hidden card can turn out to be.
+     */
+    fun unseenCards(): IntArray {
+        val seen = BooleanArray(CardRegistry.CARDS)
+        for (i in STACKS until bytes.size) {
+            if (!isHidden(bytes[i].toInt())) seen[bytes[i].toInt()] = true
+        }
+        val unseen = IntArray(CardRegistry.CARDS - seen.count { it })
+        var next = 0
+        for (id in seen.indices) if (!seen[id]) unseen[next++] = id
+        if (next != hiddenCards()) throw Exception("Hidden cards do not match the unseen cards.")
+        return unseen
+    }
+
+    private fun stackOffset(stackID: Int): Int {
+        var offset = STACKS
+        for (i in 0 until stackID) offset += bytes[i]
+        return offset
+    }
+
+    /**
+     * Returns a copy of the raw encoding, e.g. for writing it to disk.
+     */
+    fun toByteArray(): ByteArray {
+        return bytes.copyOf()
+    }
+
+    /**
+     * Builds a new GameState from the encoding. The move history is not part of the encoding, so the
+     * new state starts out with a DEAL_CARDS move only.
+     */
+    fun unpack(stackFactory: (Int) -> CardStack = ::CardStack): GameState {
+        val stacks = Array(STACKS) { i -> stackFactory(i) }
+        var offset = STACKS
+        for (stackID in 0 until STACKS) {
+            for (i in 0 until stackSize(stackID)) stacks[stackID].pushCard(cardFromByte(bytes[offset++].toInt()))
+        }
+        return GameState(
+            Array(4) { i -> stacks[i + 8] },
+            Array(7) { i -> stacks[i + 1] },
+            stacks[0],
+            stacks[12],
+            MoveLog().apply { add(MoveLog.DEAL) }
+        )
+    }
+
+    /**
+     * Decodes into the stacks of an existing GameState instead of new ones, placing the cards in the
+     * given card slots, so nothing is allocated. The stacks are cleared first, and the move history
+     * starts over with a DEAL_CARDS move, as in unpack.
+     */
+    fun unpackInto(gameState: GameState, cards: Array<Card>) {
+        if (bytes.size - STACKS > cards.size) throw Exception("Not enough card slots for ${bytes.size - STACKS} cards.")
+        gameState.talon.clear()
+        gameState.stock.clear()
+        for (stack in gameState.tableaux) stack.clear()
+        for (stack in gameState.foundations) stack.clear()
+        for (card in cards) card.reset()
+        var offset = STACKS
+        for (stackID in 0 until STACKS) {
+            val stack = when (stackID) {
+                0 -> gameState.talon
+                in 1..7 -> gameState.tableaux[stackID - 1]
+                in 8..11 -> gameState.foundations[stackID - 8]
+                else -> gameState.stock
+            }
+            for (i in 0 until stackSize(stackID)) {
+                val card = cards[offset - STACKS]
+                val cardByte = bytes[offset++].toInt()
+                if (!isHidden(cardByte)) card.id = cardByte
+                stack.pushCard(card)
+            }
+        }
+        gameState.moves.clear()
+        gameState.moves.add(MoveLog.DEAL)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is PackedGameState) return false
+        return bytes.contentEquals(other.bytes)
+    }
+
+    override fun hashCode(): Int {
+        return bytes.contentHashCode()
+    }
+
+    override fun toString(): String {
+        var ret = ""
+        var offset = STACKS
+        for (stackID in 0 until STACKS) {
+            ret += "$stackID: ["
+            for (i in 0 until stackSize(stackID)) {
+                ret += cardFromByte(bytes[offset++].toInt()).toString()
+                if (i != stackSize(stackID) - 1) ret += ", "
+            }
+            ret += "]\n"
+        }
+        return ret
+    }
+
+    companion object {
+        const val STACKS = 13
+        const val HIDDEN_CARD = 0x7F
+
+        fun isHidden(cardByte: Int): Boolean {
+            return cardByte == HIDDEN_CARD
+        }
+
+        private fun cardFromByte(cardByte: Int): Card {
+            return if (isHidden(cardByte)) Card(-1) else Card(-1, cardByte)
+        }
+
+        /**
+         * Encodes the stacks of a GameState. The move history is not part of the encoding.
+         */
+        fun pack(gameState: GameState): PackedGameState {
+            val stacks = arrayOf(gameState.talon, *gameState.tableaux, *gameState.foundations, gameState.stock)
+            var cards = 0
+            for (stack in stacks) cards += stack.size
+            val bytes = ByteArray(STACKS + cards)
+            var offset = STACKS
+            for (stackID in 0 until STACKS) {
+                bytes[stackID] = stacks[stackID].size.toByte()
+                for (i in 0 until stacks[stackID].size) {
+                    val card = stacks[stackID][i]
+                    bytes[offset++] = (if (card.isHidden()) HIDDEN_CARD else card.id).toByte()
+                }
+            }
+            return PackedGameState(bytes)
+        }
+
+        /**
+         * Wraps a raw encoding, as returned by toByteArray().
+         */
+        fun fromByteArray(bytes: ByteArray): PackedGameState {
+            if (bytes.size < STACKS) throw Exception("Packed game state is too short: ${bytes.size} bytes.")
+            var cards = 0
+            for (i in 0 until STACKS) cards += bytes[i]
+            if (bytes.size != STACKS + cards) throw Exception("Packed game state size does not match its stack sizes.")
+            for (i in STACKS until bytes.size) {
+                if (bytes[i] !in 0 until CardRegistry.CARDS && bytes[i].toInt() != HIDDEN_CARD)
+                    throw Exception("Packed game state holds an invalid card byte: ${bytes[i]}.")
+            }
+            return PackedGameState(bytes.copyOf())
+        }
+    }
+}
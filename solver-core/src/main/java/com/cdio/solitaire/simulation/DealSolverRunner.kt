@@ -0,0 +1,67 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.controller.DealSolver
+import com.cdio.solitaire.controller.SolverResult
+import com.cdio.solitaire.model.CardRegistry
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+/**
+ * Solves the decks of a DeckSource with DealSolvers, split over a fork-join pool, one solver per
+ * worker thread. The results are in deck order. With node limits only, the results are the same for
+ * any parallelism.
+ */
+class DealSolverRunner(
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val solverFactory: () -> DealSolver = { DealSolver() }
+) {
+    private class Worker(val solver: DealSolver) {
+        val deck = IntArray(CardRegistry.CARDS)
+    }
+
+    private val workers = ThreadLocal.withInitial { Worker(solverFactory()) }
+
+    fun run(decks: DeckSource): Array<SolverResult?> {
+        val results = arrayOfNulls<SolverResult>(decks.size)
+        if (parallelism == 1) {
+            solveDecks(decks, 0, decks.size, results)
+            return results
+        }
+        val pool = ForkJoinPool(parallelism)
+        try {
+            pool.invoke(SolveDecks(decks, 0, decks.size, results))
+        } finally {
+            pool.shutdown()
+        }
+        return results
+    }
+
+    private inner class SolveDecks(
+        private val decks: DeckSource,
+        private val from: Int,
+        private val until: Int,
+        private val results: Array<SolverResult?>
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            if (until - from > DECKS_PER_TASK) {
+                val middle = (from + until) ushr 1
+                invokeAll(SolveDecks(decks, from, middle, results), SolveDecks(decks, middle, until, results))
+                return
+            }
+            solveDecks(decks, from, until, results)
+        }
+    }
+
+    private fun solveDecks(decks: DeckSource, from: Int, until: Int, results: Array<SolverResult?>) {
+        val worker = workers.get()
+        for (index in from until until) {
+            decks.fillDeck(index, worker.deck)
+            results[index] = worker.solver.solve(worker.deck)
+        }
+    }
+
+    companion object {
+        private const val DECKS_PER_TASK = 4
+    }
+}
@@ -0,0 +1,314 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.model.CardRegistry
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * How the decks of a deck corpus are stored. RAW stores the 52 card ids as bytes. RANK stores the
+ * Lehmer code of the deck, the position of each card among the cards not dealt before it, as mixed
+ * radix numbers in 29 bytes; 52! needs 226 bits, so no encoding of a deck is much shorter than that.
+ */
+enum class DeckFormat(val bytesPerDeck: Int) {
+    RAW(CardRegistry.CARDS) {
+        override fun encode(deck: IntArray, buffer: ByteBuffer, offset: Int) {
+            checkPermutation(deck)
+            for (i in 0 until CardRegistry.CARDS) buffer.put(offset + i, deck[i].toByte())
+        }
+
+        override fun decode(buffer: ByteBuffer, offset: Int, deck: IntArray) {
+            for (i in 0 until CardRegistry.CARDS) deck[i] = buffer.get(offset + i).toInt()
+            checkPermutation(deck)
+        }
+    },
+    RANK(29) {
+        override fun encode(deck: IntArray, buffer: ByteBuffer, offset: Int) {
+            checkPermutation(deck)
+            for (i in 0 until bytesPerDeck) buffer.put(offset + i, 0)
+            var used = 0L
+            var position = 0
+            var bit = 0
+            for (group in RANK_GROUPS.indices) {
+                var value = 0L
+                for (radix in RANK_GROUPS[group] downTo RANK_GROUPS[group] - groupSize(group) + 1) {
+                    val id = deck[position++]
+                    value = value * radix + java.lang.Long.bitCount(((1L shl id) - 1) and used.inv())
+                    used = used or (1L shl id)
+                }
+                writeBits(buffer, offset, bit, value, RANK_GROUP_BITS[group])
+                bit += RANK_GROUP_BITS[group]
+            }
+        }
+
+        override fun decode(buffer: ByteBuffer, offset: Int, deck: IntArray) {
+            var unused = (1L shl CardRegistry.CARDS) - 1
+            var position = 0
+            var bit = 0
+            for (group in RANK_GROUPS.indices) {
+                var value = readBits(buffer, offset, bit, RANK_GROUP_BITS[group])
+                bit += RANK_GROUP_BITS[group]
+                // The digit of the last position comes out first, it has the smallest radix.
+                val end = position + groupSize(group)
+                for (i in end - 1 downTo position) {
+                    val radix = CardRegistry.CARDS - i
+                    deck[i] = (value % radix).toInt()
+                    value /= radix
+                }
+                if (value != 0L) throw Exception("Deck rank out of range.")
+                while (position < end) {
+                    var candidates = unused
+                    for (k in 0 until deck[position]) candidates = candidates and (candidates - 1) // Drops the lowest.
+                    val id = java.lang.Long.numberOfTrailingZeros(candidates)
+                    unused = unused and (1L shl id).inv()
+                    deck[position++] = id
+                }
+            }
+            deck[CardRegistry.CARDS - 1] = java.lang.Long.numberOfTrailingZeros(unused) // Radix 1, not stored.
+        }
+    };
+
+    /**
+     * Writes the deck at an absolute offset of the buffer.
+     */
+    abstract fun encode(deck: IntArray, buffer: ByteBuffer, offset: Int)
+
+    /**
+     * Reads the deck at an absolute offset of the buffer. Only absolute reads are used, so a buffer
+     * can be shared by threads.
+     */
+    abstract fun decode(buffer: ByteBuffer, offset: Int, deck: IntArray)
+
+    companion object {
+        // The radices 52 down to 2 are split into runs whose product fits in 62 bits, each stored as
+        // one number. RANK_GROUPS holds the largest radix of each run, RANK_GROUP_BITS its width.
+        private val RANK_GROUPS: IntArray
+        private val RANK_GROUP_BITS: IntArray
+
+        init {
+            val groups = ArrayList<Int>()
+            val bits = ArrayList<Int>()
+            var radix = CardRegistry.CARDS
+            while (radix >= 2) {
+                groups.add(radix)
+                var product = 1L
+                while (radix >= 2 && product < (1L shl 62) / radix) product *= radix--
+                bits.add(64 - java.lang.Long.numberOfLeadingZeros(product - 1))
+            }
+            RANK_GROUPS = groups.toIntArray()
+            RANK_GROUP_BITS = bits.toIntArray()
+            if (RANK_GROUP_BITS.sum() > 8 * RANK.bytesPerDeck) throw Exception("Deck ranks do not fit in ${RANK.bytesPerDeck} bytes.")
+        }
+
+        private fun groupSize(group: Int): Int {
+            val next = if (group + 1 < RANK_GROUPS.size) RANK_GROUPS[group + 1] else 1
+            return RANK_GROUPS[group] - next
+        }
+
+        private fun checkPermutation(deck: IntArray) {
+            var used = 0L
+            for (id in deck) {
+                if (id < 0 || id >= CardRegistry.CARDS || used and (1L shl id) != 0L)
+                    throw Exception("Deck is not a permutation of the card ids.")
+                used = used or (1L shl id)
+            }
+            if (deck.size != CardRegistry.CARDS) throw Exception("Wrong number of cards in deck: ${deck.size}")
+        }
+
+        /**
+         * Writes the low bits of value from bit position bit on, least significant bit first. The bytes
+         * must have been cleared.
+         */
+        private fun writeBits(buffer: ByteBuffer, offset: Int, bit: Int, value: Long, bits: Int) {
+            var position = bit
+            var rest = value
+            var left = bits
+            while (left > 0) {
+                val index = offset + position / 8
+                val shift = position % 8
+                val take = minOf(8 - shift, left)
+                val byte = buffer.get(index).toInt() or (((rest and ((1L shl take) - 1)).toInt()) shl shift)
+                buffer.put(index, byte.toByte())
+                rest = rest ushr take
+                position += take
+                left -= take
+            }
+        }
+
+        private fun readBits(buffer: ByteBuffer, offset: Int, bit: Int, bits: Int): Long {
+            var value = 0L
+            var position = bit
+            var done = 0
+            while (done < bits) {
+                val shift = position % 8
+                val take = minOf(8 - shift, bits - done)
+                val part = (buffer.get(offset + position / 8).toInt() ushr shift) and ((1 shl take) - 1)
+                value = value or (part.toLong() shl done)
+                position += take
+                done += take
+            }
+            return value
+        }
+    }
+}
+
+/*
+ * Decks stored in a binary file, for simulating many reproducible deals without parsing them.
+ *
+ * File layout, big endian: MAGIC, VERSION, the DeckFormat ordinal and the seed the decks were made
+ * from (see SeededDeckSource), or NO_SEED, all as Ints but the Long seed. The decks follow, bytesPerDeck
+ * each, so the number of decks follows from the file size and a corpus can be written as a stream.
+ */
+object DeckCorpus {
+    const val NO_SEED = 0L
+    private const val MAGIC = 0x53444B31 // "SDK1"
+    private const val VERSION = 1
+    const val HEADER_BYTES = 20
+
+    /**
+     * Writes all decks of a source to a file, e.g. the decks of a SeededDeckSource with its seed.
+     */
+    fun write(file: File, decks: DeckSource, format: DeckFormat = DeckFormat.RANK, seed: Long = NO_SEED) {
+        DeckCorpusWriter(file, format, seed).use { writer ->
+            val deck = IntArray(CardRegistry.CARDS)
+            for (index in 0 until decks.size) {
+                decks.fillDeck(index, deck)
+                writer.write(deck)
+            }
+        }
+    }
+
+    internal fun writeHeader(output: DataOutput, format: DeckFormat, seed: Long) {
+        output.writeInt(MAGIC)
+        output.writeInt(VERSION)
+        output.writeInt(format.ordinal)
+        output.writeLong(seed)
+    }
+
+    /**
+     * Reads a header and returns the format, after checking it.
+     */
+    internal fun readHeader(input: ByteBuffer, name: String): DeckFormat {
+        if (input.remaining() < HEADER_BYTES) throw Exception("Deck corpus is too short: $name")
+        if (input.getInt(0) != MAGIC) throw Exception("Not a deck corpus: $name")
+        if (input.getInt(4) != VERSION) throw Exception("Unsupported deck corpus version ${input.getInt(4)}: $name")
+        val format = input.getInt(8)
+        if (format !in DeckFormat.values().indices) throw Exception("Unknown deck format $format: $name")
+        return DeckFormat.values()[format]
+    }
+}
+
+/**
+ * Writes decks to a corpus file one at a time, through a buffer.
+ */
+class DeckCorpusWriter(file: File, private val format: DeckFormat = DeckFormat.RANK, seed: Long = DeckCorpus.NO_SEED) : Closeable {
+    private val output = DataOutputStream(BufferedOutputStream(FileOutputStream(file), 1 shl 16))
+    private val record = ByteBuffer.allocate(format.bytesPerDeck)
+
+    var decksWritten = 0L
+        private set
+
+    init {
+        DeckCorpus.writeHeader(output, format, seed)
+    }
+
+    fun write(deck: IntArray) {
+        format.encode(deck, record, 0)
+        output.write(record.array())
+        decksWritten++
+    }
+
+    override fun close() {
+        output.close()
+    }
+}
+
+/**
+ * Reads the decks of a corpus file in order, one at a time, through a buffer.
+ */
+class DeckCorpusReader(file: File) : Closeable {
+    private val input = DataInputStream(BufferedInputStream(FileInputStream(file), 1 shl 16))
+    val format: DeckFormat
+    val seed: Long
+    private val record: ByteBuffer
+
+    init {
+        val header = ByteArray(DeckCorpus.HEADER_BYTES)
+        try {
+            input.readFully(header)
+        } catch (e: EOFException) {
+            input.close()
+            throw Exception("Deck corpus is too short: ${file.path}")
+        }
+        val buffer = ByteBuffer.wrap(header)
+        format = DeckCorpus.readHeader(buffer, file.path)
+        seed = buffer.getLong(12)
+        record = ByteBuffer.allocate(format.bytesPerDeck)
+    }
+
+    /**
+     * Reads the next deck into deck.
+     * @return Boolean is false if there are no decks left.
+     */
+    fun read(deck: IntArray): Boolean {
+        val bytes = record.array()
+        var read = 0
+        while (read < bytes.size) {
+            val count = input.read(bytes, read, bytes.size - read)
+            if (count == -1) {
+                if (read == 0) return false
+                throw Exception("Deck corpus ends in the middle of a deck.")
+            }
+            read += count
+        }
+        format.decode(record, 0, deck)
+        return true
+    }
+
+    override fun close() {
+        input.close()
+    }
+}
+
+/**
+ * The decks of a corpus file as a DeckSource, memory-mapped, so a SimulationRunner can play them from
+ * any number of threads without reading the file up front. Files larger than a single mapping are
+ * mapped in chunks of whole decks.
+ */
+class MappedDeckSource(file: File) : DeckSource {
+    val format: DeckFormat
+    val seed: Long
+    override val size: Int
+    private val decksPerChunk: Int
+    private val chunks: Array<MappedByteBuffer>
+
+    init {
+        RandomAccessFile(file, "r").use { raf ->
+            val channel = raf.channel
+            val header = channel.map(FileChannel.MapMode.READ_ONLY, 0, minOf(channel.size(), DeckCorpus.HEADER_BYTES.toLong()))
+            format = DeckCorpus.readHeader(header, file.path)
+            seed = header.getLong(12)
+            val bytes = channel.size() - DeckCorpus.HEADER_BYTES
+            if (bytes % format.bytesPerDeck != 0L) throw Exception("Deck corpus ends in the middle of a deck: ${file.path}")
+            if (bytes / format.bytesPerDeck > Int.MAX_VALUE) throw Exception("Deck corpus has too many decks: ${file.path}")
+            size = (bytes / format.bytesPerDeck).toInt()
+            decksPerChunk = MAX_CHUNK_BYTES / format.bytesPerDeck
+            val chunkCount = (size + decksPerChunk - 1) / decksPerChunk
+            chunks = Array(chunkCount) { i ->
+                val first = i.toLong() * decksPerChunk
+                val decks = minOf(decksPerChunk.toLong(), size - first)
+                channel.map(FileChannel.MapMode.READ_ONLY, DeckCorpus.HEADER_BYTES + first * format.bytesPerDeck, decks * format.bytesPerDeck)
+            }
+        }
+    }
+
+    override fun fillDeck(index: Int, deck: IntArray) {
+        if (index < 0 || index >= size) throw Exception("Deck index $index out of bounds for size $size.")
+        format.decode(chunks[index / decksPerChunk], (index % decksPerChunk) * format.bytesPerDeck, deck)
+    }
+
+    companion object {
+        private const val MAX_CHUNK_BYTES = 1 shl 30
+    }
+}
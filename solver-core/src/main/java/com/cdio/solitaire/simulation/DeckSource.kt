@@ -0,0 +1,75 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.model.CardRegistry
+import java.util.*
+
+/**
+ * A numbered collection of decks to simulate. A deck is 52 card ids (see CardRegistry) in the order
+ * of a face down deck, where the last card is dealt first.
+ */
+interface DeckSource {
+    val size: Int
+
+    /**
+     * Writes deck number index into deck. Must be safe to call from several threads at once.
+     */
+    fun fillDeck(index: Int, deck: IntArray)
+}
+
+/**
+ * Random decks derived from a seed. Every deck has its own random generator, seeded from the seed and
+ * the deck index, so deck number index is the same no matter which thread asks for it, or in which order.
+ */
+class SeededDeckSource(private val seed: Long, override val size: Int) : DeckSource {
+
+    override fun fillDeck(index: Int, deck: IntArray) {
+        if (index < 0 || index >= size) throw Exception("Deck index $index out of bounds for size $size.")
+        shuffle(SplittableRandom(deckSeed(seed, index)), deck)
+    }
+
+    companion object {
+        /**
+         * Fills deck with a Fisher-Yates shuffle of the 52 card ids.
+         */
+        fun shuffle(random: SplittableRandom, deck: IntArray) {
+            for (i in 0 until CardRegistry.CARDS) deck[i] = i
+            for (i in CardRegistry.CARDS - 1 downTo 1) {
+                val j = random.nextInt(i + 1)
+                val card = deck[i]
+                deck[i] = deck[j]
+                deck[j] = card
+            }
+        }
+
+        /**
+         * Mixes seed and index (the finalizer of SplittableRandom), so neighbouring indices get
+         * unrelated generators.
+         */
+        fun deckSeed(seed: Long, index: Int): Long {
+            var z = seed + (index + 1) * -0x61c8864680b583ebL
+            z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+            z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+            return z xor (z ushr 31)
+        }
+    }
+}
+
+/**
+ * Fixed decks written in Danish notation, e.g. "K5, H5, S9, ...", as in StrategySimulation.
+ */
+class ListDeckSource(deckStrings: List<String>) : DeckSource {
+    private val decks = Array(deckStrings.size) { i -> parseDeck(deckStrings[i]) }
+
+    override val size: Int
+        get() = decks.size
+
+    override fun fillDeck(index: Int, deck: IntArray) {
+        decks[index].copyInto(deck)
+    }
+
+    private fun parseDeck(deckString: String): IntArray {
+        val cardStrings = deckString.split(", ")
+        if (cardStrings.size != CardRegistry.CARDS) throw Exception("Wrong number of cards in deckString, or wrong format.")
+        return IntArray(CardRegistry.CARDS) { i -> CardRegistry.fromStringDanish(cardStrings[i]) }
+    }
+}
@@ -0,0 +1,297 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.controller.Zobrist
+import com.cdio.solitaire.model.*
+import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A case where the candidate engine did not behave like the reference, shrunk to as few steps as the
+ * fuzzer could. deck is the deal, actions the steps (see EngineFuzzer), moves the moves the reference
+ * played for them and message the first difference.
+ */
+class FuzzFailure(val index: Int, val deck: IntArray, val actions: IntArray, val moves: String, val message: String) {
+    override fun toString(): String {
+        return "Case $index: $message\n" +
+                "Deck: ${deck.joinToString(", ") { CardRegistry.toStringDanish(it) }}\n" +
+                "Actions: ${actions.joinToString(",")}\n" +
+                "Moves: $moves\n"
+    }
+}
+
+class FuzzReport(val cases: Long, val steps: Long, val failures: List<FuzzFailure>) {
+    override fun toString(): String {
+        var ret = "Cases: $cases\nSteps: $steps\nFailures: ${failures.size}\n"
+        for (failure in failures) ret += failure.toString()
+        return ret
+    }
+}
+
+/**
+ * Differential fuzzing of game engines: plays random move sequences on a reference
+ * GameStateController and a candidate, e.g. one on other CardStacks, in lockstep with a
+ * ReferenceGame, and reports where they disagree. The ReferenceGame shares no code with the engines,
+ * so a bug in GameStateController itself, which both engines would have, is found as well.
+ *
+ * A case is a seeded deck, dealt with the stock known from the start and tableau cards revealed as
+ * they are turned over, as in DealSolver, and a list of actions. Before every step, the legality of
+ * every move is compared between the rules and the engines. An action of UNDO undoes the last move on
+ * all three, any other action plays legal move number action modulo the number of legal moves. After
+ * every step the packed states, hidden card counts, won states and cards to turn over are compared
+ * with the rules, and the hash of each engine with a hash computed from scratch. After an undo the
+ * engines must also be back in the packed state they had before the move.
+ *
+ * A failing case is shrunk: the actions after the failure are dropped, then runs of actions are
+ * removed and actions lowered to 0 as long as the case keeps failing. Cases are run in parallel on a
+ * fork-join pool, each worker thread with its own pair of engines. Cases depend on seed and their
+ * index only, so a failure is reproduced by running its deck and actions with reproduce.
+ */
+class EngineFuzzer(
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val referenceFactory: () -> GameStateController = { GameStateController(::LinkedCardStack) },
+    private val candidateFactory: () -> GameStateController = { GameStateController(::ArrayCardStack) }
+) {
+    /**
+     * The engines of a worker thread, reused for all the cases it runs.
+     */
+    private class Worker(val reference: GameStateController, val candidate: GameStateController) {
+        val rules = ReferenceGame()
+        val deck = IntArray(CardRegistry.CARDS)
+        val snapshots = ArrayList<PackedGameState>() // The reference states before the moves played.
+        val legalMoves = MoveList()
+        var steps = 0L
+        var failedStep = 0
+        var moves = ""
+    }
+
+    private val workers = ThreadLocal.withInitial { Worker(referenceFactory(), candidateFactory()) }
+
+    /**
+     * Runs cases seeded cases of stepsPerCase actions each.
+     */
+    fun run(seed: Long, cases: Int, stepsPerCase: Int = 200): FuzzReport {
+        val steps = LongAdder()
+        val failures = arrayOfNulls<FuzzFailure>(cases)
+        if (parallelism == 1) {
+            runCases(seed, 0, cases, stepsPerCase, steps, failures) // No need for a pool.
+        } else {
+            val pool = ForkJoinPool(parallelism)
+            try {
+                pool.invoke(RunCases(seed, 0, cases, stepsPerCase, steps, failures))
+            } finally {
+                pool.shutdown()
+            }
+        }
+        return FuzzReport(cases.toLong(), steps.sum(), failures.filterNotNull())
+    }
+
+    /**
+     * Runs a single case, e.g. a reported failure, and returns the first difference, or null.
+     */
+    fun reproduce(deck: IntArray, actions: IntArray): String? {
+        return runCase(workers.get(), deck, actions)
+    }
+
+    private inner class RunCases(
+        private val seed: Long,
+        private val from: Int,
+        private val until: Int,
+        private val stepsPerCase: Int,
+        private val steps: LongAdder,
+        private val failures: Array<FuzzFailure?>
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            if (until - from > CASES_PER_TASK) {
+                val middle = (from + until) ushr 1
+                invokeAll(
+                    RunCases(seed, from, middle, stepsPerCase, steps, failures),
+                    RunCases(seed, middle, until, stepsPerCase, steps, failures)
+                )
+                return
+            }
+            runCases(seed, from, until, stepsPerCase, steps, failures)
+        }
+    }
+
+    private fun runCases(seed: Long, from: Int, until: Int, stepsPerCase: Int, steps: LongAdder, failures: Array<FuzzFailure?>) {
+        val worker = workers.get()
+        val decks = SeededDeckSource(seed, until)
+        worker.steps = 0L
+        for (index in from until until) {
+            decks.fillDeck(index, worker.deck)
+            val actions = randomActions(SplittableRandom(SeededDeckSource.deckSeed(seed xor ACTIONS_SEED, index)), stepsPerCase)
+            if (runCase(worker, worker.deck, actions) != null) failures[index] = shrink(worker, index, worker.deck.copyOf(), actions)
+        }
+        steps.add(worker.steps)
+    }
+
+    private fun randomActions(random: SplittableRandom, steps: Int): IntArray {
+        return IntArray(steps) { if (random.nextInt(UNDO_ODDS) == 0) UNDO else random.nextInt(1 shl 16) }
+    }
+
+    private fun shrink(worker: Worker, index: Int, deck: IntArray, failing: IntArray): FuzzFailure {
+        var actions = failing.copyOf(worker.failedStep + 1)
+        var chunk = actions.size / 2
+        while (chunk >= 1) {
+            var start = 0
+            while (start < actions.size) {
+                val end = minOf(start + chunk, actions.size)
+                val candidate = actions.copyOfRange(0, start) + actions.copyOfRange(end, actions.size)
+                if (runCase(worker, deck, candidate) != null) actions = candidate.copyOf(worker.failedStep + 1)
+                else start += chunk
+            }
+            chunk /= 2
+        }
+        var i = 0
+        while (i < actions.size) {
+            if (actions[i] > 0) {
+                val candidate = actions.copyOf()
+                candidate[i] = 0
+                if (runCase(worker, deck, candidate) != null) actions = candidate.copyOf(worker.failedStep + 1)
+            }
+            i++
+        }
+        val message = runCase(worker, deck, actions)!!
+        return FuzzFailure(index, deck, actions, worker.moves, message)
+    }
+
+    /**
+     * Plays a case on the rules and both engines, and returns the first difference, or null if they
+     * agree. worker.failedStep is the step of the difference, and worker.moves the moves played.
+     */
+    private fun runCase(worker: Worker, deck: IntArray, actions: IntArray): String? {
+        val movesPlayed = StringBuilder()
+        worker.failedStep = 0
+        val message = try {
+            deal(worker, deck)
+            compareStates(worker) ?: playActions(worker, actions, movesPlayed)
+        } catch (e: Exception) {
+            "Exception: $e"
+        }
+        worker.moves = movesPlayed.toString()
+        return message
+    }
+
+    private fun playActions(worker: Worker, actions: IntArray, movesPlayed: StringBuilder): String? {
+        val reference = worker.reference
+        val candidate = worker.candidate
+        val rules = worker.rules
+        for (step in actions.indices) {
+            worker.failedStep = step
+            worker.steps++
+            collectLegalMoves(worker)?.let { return "Step $step: $it" }
+
+            if (actions[step] == UNDO) {
+                if (rules.movesPlayed == 0) continue // Only the deal.
+                reference.undoMove()
+                candidate.undoMove()
+                rules.undo()
+                movesPlayed.append("U,")
+                val before = worker.snapshots.removeAt(worker.snapshots.size - 1)
+                if (reference.packGameState() != before) return "Step $step: undo does not restore the reference"
+                if (candidate.packGameState() != before) return "Step $step: undo does not restore the candidate"
+            } else {
+                if (worker.legalMoves.isEmpty()) return null
+                val move = worker.legalMoves[actions[step] % worker.legalMoves.size]
+                worker.snapshots.add(reference.packGameState())
+                val referenceMove = reference.toMove(move)
+                val candidateMove = candidate.toMove(move)
+                movesPlayed.append(referenceMove.toStringDanish())
+                reference.performMove(referenceMove)
+                candidate.performMove(candidateMove)
+                val turnedOver = rules.perform(move)
+                val turnsOver = turnedOver != EncodedMove.NO_STACK
+                if ((referenceMove.cardToUpdate != null) != turnsOver || (candidateMove.cardToUpdate != null) != turnsOver)
+                    return "Step $step: ${EncodedMove.toString(move)} turns over a card in the rules: $turnsOver, " +
+                            "reference: ${referenceMove.cardToUpdate != null}, candidate: ${candidateMove.cardToUpdate != null}"
+                if (turnsOver) {
+                    val id = rules.turnOver(turnedOver)
+                    reference.revealCard(referenceMove.cardToUpdate!!, id)
+                    candidate.revealCard(candidateMove.cardToUpdate!!, id)
+                }
+            }
+            compareStates(worker)?.let { return "Step $step: $it" }
+        }
+        return null
+    }
+
+    /**
+     * Fills worker.legalMoves with the moves legal by the rules, and returns a move whose legality
+     * differs in an engine, if any.
+     */
+    private fun collectLegalMoves(worker: Worker): String? {
+        worker.legalMoves.clear()
+        for (sourceStackID in 0..7) {
+            check(worker, EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, sourceStackID, cardsToMove = 1))?.let { return it }
+            val sourceSize = worker.reference.getCardStackFromID(sourceStackID).size
+            for (targetStackID in 1..7) {
+                if (sourceStackID == 0) {
+                    check(worker, EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, targetStackID, 1))?.let { return it }
+                    continue
+                }
+                for (cardsToMove in 1..maxOf(sourceSize, 1)) {
+                    check(worker, EncodedMove.encode(MoveType.MOVE_STACK, sourceStackID, targetStackID, cardsToMove))?.let { return it }
+                }
+            }
+        }
+        for (foundationID in 8..11) {
+            for (targetStackID in 1..7) {
+                check(worker, EncodedMove.encode(MoveType.MOVE_FROM_FOUNDATION, foundationID, targetStackID, 1))?.let { return it }
+            }
+        }
+        check(worker, EncodedMove.encode(MoveType.DRAW_STOCK))?.let { return it }
+        return check(worker, EncodedMove.encode(MoveType.FLIP_TALON))
+    }
+
+    private fun check(worker: Worker, move: Int): String? {
+        val legal = worker.rules.isLegal(move)
+        val referenceLegal = worker.reference.isMoveLegal(move)
+        val candidateLegal = worker.candidate.isMoveLegal(move)
+        if (referenceLegal != legal || candidateLegal != legal)
+            return "legality of ${EncodedMove.toString(move)} differs, rules: $legal, reference: $referenceLegal, candidate: $candidateLegal"
+        if (legal) worker.legalMoves.add(move)
+        return null
+    }
+
+    private fun compareStates(worker: Worker): String? {
+        val rules = worker.rules
+        for ((name, gsc) in arrayOf("reference" to worker.reference, "candidate" to worker.candidate)) {
+            val packed = gsc.packGameState()
+            rules.difference(packed)?.let { return "$name state differs from the rules: $it\n$packed" }
+            if (gsc.hash != Zobrist.hash(gsc.gameState)) return "$name hash differs from a hash from scratch"
+            if (gsc.getNumberOfHiddenCards() != rules.hiddenCards()) return "$name hidden card count differs from the rules"
+            if (gsc.isGameWon() != rules.isWon()) return "$name won state differs from the rules"
+        }
+        return null
+    }
+
+    /**
+     * Deals the deck on the rules and both engines with the stock known, see DealSolver.
+     */
+    private fun deal(worker: Worker, deck: IntArray) {
+        val rules = worker.rules
+        rules.deal(deck)
+        worker.snapshots.clear()
+        for (gsc in arrayOf(worker.reference, worker.candidate)) {
+            gsc.resetGameState()
+            for (j in 0..6) gsc.revealCard(gsc.gameState.tableaux[j].tail!!, rules.cardAt(j + 1, j))
+            val stock = gsc.gameState.stock
+            for (i in 0 until stock.size) gsc.revealCard(stock[i], rules.cardAt(12, i))
+        }
+    }
+
+    companion object {
+        /**
+         * Action that undoes the last move.
+         */
+        const val UNDO = -1
+
+        private const val UNDO_ODDS = 8 // One action in UNDO_ODDS is an undo.
+        private const val CASES_PER_TASK = 8
+        private const val ACTIONS_SEED = 0x2545F4914F6CDD1DL
+    }
+}
@@ -0,0 +1,75 @@
+package com.cdio.solitaire.simulation
+
+/**
+ * Histogram of latencies in nanoseconds, with log-linear buckets as in HdrHistogram: every power of
+ * two is split into SUB_BUCKETS linear buckets, so a recorded value is off by less than 1/SUB_BUCKETS
+ * of itself, from 1 ns up to hours, in a fixed array of counters. Recording is a few shifts and an
+ * increment. Not thread-safe: record into one histogram per thread and merge them with add.
+ */
+class LatencyHistogram {
+    private val counts = LongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS)
+
+    var count = 0L
+        private set
+    var max = 0L
+        private set
+    private var total = 0L
+
+    fun record(nanos: Long) {
+        val value = maxOf(nanos, 0L)
+        counts[indexOf(value)]++
+        count++
+        total += value
+        if (value > max) max = value
+    }
+
+    /**
+     * Adds the values recorded in other to this histogram.
+     */
+    fun add(other: LatencyHistogram) {
+        for (i in counts.indices) counts[i] += other.counts[i]
+        count += other.count
+        total += other.total
+        if (other.max > max) max = other.max
+    }
+
+    fun mean(): Double {
+        return if (count == 0L) 0.0 else total.toDouble() / count
+    }
+
+    /**
+     * Value below which the given fraction of the recorded values fall, e.g. 0.99 for p99. Reported
+     * as the highest value of its bucket, but never above max.
+     */
+    fun percentile(fraction: Double): Long {
+        if (fraction < 0.0 || fraction > 1.0) throw Exception("Fraction out of range: $fraction")
+        if (count == 0L) return 0L
+        val rank = maxOf(1L, Math.ceil(fraction * count).toLong())
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) return minOf(highestValueOf(i), max)
+        }
+        return max
+    }
+
+    override fun toString(): String {
+        return "p50 ${percentile(0.5)} ns, p99 ${percentile(0.99)} ns, max $max ns, mean ${mean().toLong()} ns ($count values)"
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 6
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        private fun indexOf(value: Long): Int {
+            val shift = maxOf(0, 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS)
+            return (shift shl SUB_BUCKET_BITS) + (value ushr shift).toInt()
+        }
+
+        private fun highestValueOf(index: Int): Long {
+            val shift = maxOf(0, (index ushr SUB_BUCKET_BITS) - 1)
+            val subBucket = index - (shift shl SUB_BUCKET_BITS)
+            return ((subBucket + 1).toLong() shl shift) - 1
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.Move
+import com.cdio.solitaire.model.MoveType
+
+/**
+ * Mimics the physical cards that still need to be recognized, as card ids. Plays the part of the
+ * player and the camera in simulations: it follows the moves made by the engine and tells which
+ * card was turned over when a move needs card recognition.
+ *
+ * Only the face down cards of the tableaux, the stock and the talon are tracked, and nothing is
+ * allocated after construction, so a table can be dealt again for every game.
+ */
+class PhysicalTable {
+    private val tableaux = Array(7) { IntArray(7) }
+    private val tableauSizes = IntArray(7)
+
+    // Stock is a ring buffer, since flipping the talon pushes to its head.
+    private val stock = IntArray(CardRegistry.CARDS)
+    private var stockFirst = 0
+    private var stockSize = 0
+    private val talon = IntArray(CardRegistry.CARDS)
+    private var talonSize = 0
+
+    /**
+     * Deals out a deck in compliance with solitaire rules, with the last card of the deck dealt first.
+     */
+    fun deal(deck: IntArray) {
+        var next = CardRegistry.CARDS
+        tableauSizes.fill(0)
+        for (i in 0..6) {
+            for (j in i..6) tableaux[j][tableauSizes[j]++] = deck[--next]
+        }
+        for (i in 0 until next) stock[i] = deck[i]
+        stockFirst = 0
+        stockSize = next
+        talonSize = 0
+    }
+
+    /**
+     * Turns over the top card of every tableau, as at the start of a game. Returns the ids by tableau.
+     */
+    fun turnFirstLayer(cards: IntArray) {
+        for (i in 0..6) cards[i] = tableaux[i][--tableauSizes[i]]
+    }
+
+    /**
+     * Mirrors a move performed by the engine, before its cardToUpdate is discovered.
+     */
+    fun performMove(move: Move) {
+        when (move.moveType) {
+            MoveType.MOVE_FROM_TALON -> talonSize--
+            MoveType.MOVE_TO_FOUNDATION -> if (move.sourceStack!!.stackID == 0) talonSize--
+            MoveType.DRAW_STOCK -> repeat(3) { talon[talonSize++] = stock[stockSlot(--stockSize)] }
+            MoveType.FLIP_TALON -> {
+                // Pushes the talon to the head of stock, in reversed order.
+                for (i in 0 until talonSize) {
+                    stockFirst = if (stockFirst == 0) stock.size - 1 else stockFirst - 1
+                    stock[stockFirst] = talon[i]
+                }
+                stockSize += talonSize
+                talonSize = 0
+            }
+            else -> {}
+        }
+    }
+
+    /**
+     * Returns the id of a card turned face up in the given stack.
+     */
+    fun discoverCard(stackID: Int): Int {
+        return when (stackID) {
+            in 1..7 -> tableaux[stackID - 1][--tableauSizes[stackID - 1]]
+            0 -> talon[talonSize - 1]
+            else -> throw Exception("No hidden cards here.")
+        }
+    }
+
+    private fun stockSlot(index: Int): Int {
+        val slot = stockFirst + index
+        return if (slot >= stock.size) slot - stock.size else slot
+    }
+}
@@ -0,0 +1,204 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.model.PackedGameState
+
+/**
+ * The rules of the game on plain arrays of card ids, written apart from GameStateController and the
+ * CardStacks, so EngineFuzzer can check the engines against rules that share none of their code:
+ * legality, moves, undo and turning cards over. Stack IDs are those of GameStateController and moves
+ * are encoded as in EncodedMove.
+ *
+ * Every card of the deal is known; FACE_DOWN marks the cards the engines see as hidden. The stock is
+ * face up from the deal, as in DealSolver. Undo restores a copy of the state taken before the move.
+ */
+internal class ReferenceGame {
+    private val stacks = Array(PackedGameState.STACKS) { IntArray(CardRegistry.CARDS) }
+    private val sizes = IntArray(PackedGameState.STACKS)
+    private val history = ArrayList<IntArray>() // The states before the moves, reused between games.
+    private var moves = 0
+
+    val movesPlayed: Int
+        get() = moves
+
+    fun deal(deck: IntArray) {
+        sizes.fill(0)
+        moves = 0
+        var next = CardRegistry.CARDS
+        for (i in 0..6) {
+            for (j in i..6) push(j + 1, if (i == j) deck[--next] else deck[--next] or FACE_DOWN)
+        }
+        for (i in 0 until next) push(STOCK, deck[i])
+    }
+
+    fun isLegal(move: Int): Boolean {
+        val source = EncodedMove.sourceStackID(move)
+        val target = EncodedMove.targetStackID(move)
+        return when (EncodedMove.moveType(move)) {
+            MoveType.MOVE_STACK -> {
+                val cardsToMove = EncodedMove.cardsToMove(move)
+                source in 1..7 && source != target && cardsToMove in 1..sizes[source] &&
+                        fitsOnTableau(stacks[source][sizes[source] - cardsToMove], target)
+            }
+            MoveType.MOVE_FROM_TALON -> source == TALON && sizes[TALON] > 0 && fitsOnTableau(tail(TALON), target)
+            MoveType.MOVE_FROM_FOUNDATION -> source in 8..11 && sizes[source] > 0 && fitsOnTableau(tail(source), target)
+            MoveType.MOVE_TO_FOUNDATION -> source in 0..7 && sizes[source] > 0 && fitsOnFoundation(tail(source))
+            MoveType.DRAW_STOCK -> sizes[STOCK] >= 3
+            MoveType.FLIP_TALON -> sizes[STOCK] < 3 && sizes[STOCK] + sizes[TALON] >= 3
+            else -> false
+        }
+    }
+
+    /**
+     * Plays a legal move.
+     * @return Int stackID of the tableau whose tail was turned face down by the move, or NO_STACK.
+     */
+    fun perform(move: Int): Int {
+        saveState()
+        val source = EncodedMove.sourceStackID(move)
+        when (EncodedMove.moveType(move)) {
+            MoveType.MOVE_STACK -> moveCards(source, EncodedMove.targetStackID(move), EncodedMove.cardsToMove(move))
+            MoveType.MOVE_FROM_TALON, MoveType.MOVE_FROM_FOUNDATION -> moveCards(source, EncodedMove.targetStackID(move), 1)
+            MoveType.MOVE_TO_FOUNDATION -> moveCards(source, foundationFor(tail(source)), 1)
+            MoveType.DRAW_STOCK -> repeat(3) { push(TALON, stacks[STOCK][--sizes[STOCK]]) }
+            MoveType.FLIP_TALON -> {
+                // The talon turned over goes under the stock, its last card first.
+                val stock = stacks[STOCK].copyOf(sizes[STOCK])
+                val stockSize = sizes[STOCK]
+                sizes[STOCK] = 0
+                while (sizes[TALON] > 0) push(STOCK, stacks[TALON][--sizes[TALON]])
+                for (i in 0 until stockSize) push(STOCK, stock[i])
+            }
+            else -> throw Exception("${EncodedMove.moveType(move)} is not a move of the rules.")
+        }
+        return if (source in 1..7 && sizes[source] > 0 && tail(source) and FACE_DOWN != 0) source else EncodedMove.NO_STACK
+    }
+
+    /**
+     * Returns the id of the card at an index of a stack, counted from the head, face up or not.
+     */
+    fun cardAt(stackID: Int, index: Int): Int = stacks[stackID][index] and FACE_DOWN.inv()
+
+    /**
+     * Turns the tail of a tableau face up, and returns its card id.
+     */
+    fun turnOver(stackID: Int): Int {
+        val id = tail(stackID) and FACE_DOWN.inv()
+        stacks[stackID][sizes[stackID] - 1] = id
+        return id
+    }
+
+    fun undo() {
+        if (moves == 0) throw Exception("Nothing to undo.")
+        val state = history[--moves]
+        var offset = PackedGameState.STACKS
+        for (stackID in 0 until PackedGameState.STACKS) {
+            sizes[stackID] = state[stackID]
+            state.copyInto(stacks[stackID], 0, offset, offset + sizes[stackID])
+            offset += sizes[stackID]
+        }
+    }
+
+    fun hiddenCards(): Int {
+        var hiddenCards = 0
+        for (stackID in 0 until PackedGameState.STACKS) {
+            for (i in 0 until sizes[stackID]) if (stacks[stackID][i] and FACE_DOWN != 0) hiddenCards++
+        }
+        return hiddenCards
+    }
+
+    fun isWon(): Boolean {
+        for (foundation in 8..11) if (sizes[foundation] != 13) return false
+        return true
+    }
+
+    /**
+     * Describes the first card where a packed state of an engine differs from this one, or returns null.
+     */
+    fun difference(packed: PackedGameState): String? {
+        for (stackID in 0 until PackedGameState.STACKS) {
+            if (packed.stackSize(stackID) != sizes[stackID])
+                return "stack $stackID has ${packed.stackSize(stackID)} cards, the rules say ${sizes[stackID]}"
+            for (i in 0 until sizes[stackID]) {
+                val card = stacks[stackID][i]
+                val expected = if (card and FACE_DOWN != 0) PackedGameState.HIDDEN_CARD else card
+                if (packed.cardAt(stackID, i) != expected)
+                    return "card $i of stack $stackID is ${describe(packed.cardAt(stackID, i))}, the rules say ${describe(expected)}"
+            }
+        }
+        return null
+    }
+
+    private fun describe(cardByte: Int): String {
+        return if (cardByte == PackedGameState.HIDDEN_CARD) "hidden" else CardRegistry.toStringDanish(cardByte)
+    }
+
+    private fun saveState() {
+        if (moves == history.size) history.add(IntArray(PackedGameState.STACKS + CardRegistry.CARDS))
+        val state = history[moves++]
+        var offset = PackedGameState.STACKS
+        for (stackID in 0 until PackedGameState.STACKS) {
+            state[stackID] = sizes[stackID]
+            stacks[stackID].copyInto(state, offset, 0, sizes[stackID])
+            offset += sizes[stackID]
+        }
+    }
+
+    private fun push(stackID: Int, card: Int) {
+        stacks[stackID][sizes[stackID]++] = card
+    }
+
+    private fun tail(stackID: Int): Int = stacks[stackID][sizes[stackID] - 1]
+
+    private fun moveCards(source: Int, target: Int, cardsToMove: Int) {
+        val first = sizes[source] - cardsToMove
+        for (i in 0 until cardsToMove) push(target, stacks[source][first + i])
+        sizes[source] = first
+    }
+
+    private fun rank(card: Int): Int = card % 13 + 1
+
+    private fun suit(card: Int): Int = card / 13
+
+    // Clubs and spades are black, diamonds and hearts red (suits 0 to 3 in id order).
+    private fun isRed(card: Int): Boolean = suit(card) == 1 || suit(card) == 2
+
+    /**
+     * A face up card goes on an empty tableau if it is a king, else on a face up card of the other
+     * color one rank higher.
+     */
+    private fun fitsOnTableau(card: Int, target: Int): Boolean {
+        if (card and FACE_DOWN != 0 || target !in 1..7) return false
+        if (sizes[target] == 0) return rank(card) == 13
+        val targetCard = tail(target)
+        return targetCard and FACE_DOWN == 0 && rank(targetCard) == rank(card) + 1 && isRed(targetCard) != isRed(card)
+    }
+
+    /**
+     * The foundation a card goes to: the one with its suit, wherever it is, or else the first empty one.
+     */
+    private fun foundationFor(card: Int): Int {
+        for (foundation in 8..11) {
+            if (sizes[foundation] > 0 && suit(tail(foundation)) == suit(card)) return foundation
+        }
+        for (foundation in 8..11) {
+            if (sizes[foundation] == 0) return foundation
+        }
+        throw Exception("No foundation for ${CardRegistry.toStringDanish(card)}.")
+    }
+
+    private fun fitsOnFoundation(card: Int): Boolean {
+        if (card and FACE_DOWN != 0) return false
+        if (rank(card) == 1) return true
+        val foundation = foundationFor(card)
+        return sizes[foundation] > 0 && rank(tail(foundation)) + 1 == rank(card)
+    }
+
+    companion object {
+        const val FACE_DOWN = 0x80
+        private const val TALON = 0
+        private const val STOCK = 12
+    }
+}
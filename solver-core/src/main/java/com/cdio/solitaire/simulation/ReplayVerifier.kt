@@ -0,0 +1,231 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.CardStack
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.MoveType
+import java.io.File
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+/**
+ * Outcome of replaying the move log of deck number index. movesPlayed is the number of legal moves
+ * before illegalMove, the first move that could not be played, or all moves if illegalMove is null.
+ * won tells if the legal moves won the game.
+ */
+class ReplayResult(val index: Int, val movesPlayed: Int, val illegalMove: String?, val won: Boolean) {
+    val isValid: Boolean
+        get() = illegalMove == null
+
+    override fun toString(): String {
+        return if (isValid) "Log $index: $movesPlayed moves, " + if (won) "won" else "not won"
+        else "Log $index: move ${movesPlayed + 1} \"$illegalMove\" is illegal"
+    }
+}
+
+/**
+ * Totals of verifying a file of move logs, with the results of the logs that were not valid.
+ */
+class ReplaySummary(val logs: Long, val validLogs: Long, val wonLogs: Long, val failures: List<ReplayResult>) {
+    override fun toString(): String {
+        var ret = "Logs: $logs\nValid: $validLogs\nWon: $wonLogs\n"
+        for (failure in failures) ret += "$failure\n"
+        return ret
+    }
+}
+
+/**
+ * Replays move logs in the Danish notation of GameStateController.movesAsString, e.g. "K7-3,T,S,R1-F,",
+ * against their decks, and finds the first illegal move of each. Log number i belongs to deck number
+ * i of the DeckSource. The whole deck is known, so no move depends on recognizing a card, and moves
+ * are only checked by the rules of GameStateController.isMoveLegal, without any strategy.
+ *
+ * A move names the card it moves, and the card is looked up where it can be moved from: the talon,
+ * a face up card of a tableau or the top of a foundation. "T" draws from stock and "S" flips the
+ * talon. Logs are replayed in parallel on a fork-join pool, each worker thread on its own
+ * GameStateController, and the results do not depend on parallelism.
+ */
+class ReplayVerifier(private val parallelism: Int = Runtime.getRuntime().availableProcessors()) {
+
+    /**
+     * The engine of a worker thread, reused for all the logs it replays.
+     */
+    private class Replayer {
+        val gsc = GameStateController()
+        val deck = IntArray(CardRegistry.CARDS)
+        val tableauIds = Array(7) { IntArray(7) } // The ids of the tableau cards as dealt.
+    }
+
+    private val replayers = ThreadLocal.withInitial { Replayer() }
+
+    /**
+     * Replays every log, and returns the results in log order.
+     */
+    fun verify(decks: DeckSource, logs: List<String>): Array<ReplayResult?> {
+        if (logs.size > decks.size) throw Exception("There are ${logs.size} logs for ${decks.size} decks.")
+        val results = arrayOfNulls<ReplayResult>(logs.size)
+        replayAll(decks, logs, 0, results)
+        return results
+    }
+
+    /**
+     * Replays a file with one log per line, read in batches, so the file can hold millions of logs.
+     */
+    fun verify(decks: DeckSource, logFile: File): ReplaySummary {
+        var logs = 0L
+        var validLogs = 0L
+        var wonLogs = 0L
+        val failures = ArrayList<ReplayResult>()
+        val batch = ArrayList<String>(LOGS_PER_BATCH)
+        val results = arrayOfNulls<ReplayResult>(LOGS_PER_BATCH)
+        logFile.bufferedReader().use { reader ->
+            while (true) {
+                batch.clear()
+                while (batch.size < LOGS_PER_BATCH) batch.add(reader.readLine() ?: break)
+                if (batch.isEmpty()) break
+                if (logs + batch.size > decks.size) throw Exception("There are more logs than the ${decks.size} decks.")
+                replayAll(decks, batch, logs.toInt(), results)
+                for (i in batch.indices) {
+                    val result = results[i]!!
+                    if (result.isValid) validLogs++ else failures.add(result)
+                    if (result.won) wonLogs++
+                }
+                logs += batch.size
+            }
+        }
+        return ReplaySummary(logs, validLogs, wonLogs, failures)
+    }
+
+    private fun replayAll(decks: DeckSource, logs: List<String>, firstIndex: Int, results: Array<ReplayResult?>) {
+        if (parallelism == 1) {
+            replayLogs(decks, logs, firstIndex, 0, logs.size, results) // No need for a pool.
+            return
+        }
+        val pool = ForkJoinPool(parallelism)
+        try {
+            pool.invoke(ReplayLogs(decks, logs, firstIndex, 0, logs.size, results))
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    private inner class ReplayLogs(
+        private val decks: DeckSource,
+        private val logs: List<String>,
+        private val firstIndex: Int,
+        private val from: Int,
+        private val until: Int,
+        private val results: Array<ReplayResult?>
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            if (until - from > LOGS_PER_TASK) {
+                val middle = (from + until) ushr 1
+                invokeAll(
+                    ReplayLogs(decks, logs, firstIndex, from, middle, results),
+                    ReplayLogs(decks, logs, firstIndex, middle, until, results)
+                )
+                return
+            }
+            replayLogs(decks, logs, firstIndex, from, until, results)
+        }
+    }
+
+    private fun replayLogs(decks: DeckSource, logs: List<String>, firstIndex: Int, from: Int, until: Int, results: Array<ReplayResult?>) {
+        val replayer = replayers.get()
+        for (i in from until until) {
+            decks.fillDeck(firstIndex + i, replayer.deck)
+            results[i] = replay(replayer, firstIndex + i, logs[i])
+        }
+    }
+
+    private fun replay(replayer: Replayer, index: Int, log: String): ReplayResult {
+        deal(replayer)
+        val gsc = replayer.gsc
+        var movesPlayed = 0
+        var start = 0
+        while (start < log.length) {
+            var end = log.indexOf(',', start)
+            if (end == -1) end = log.length
+            val token = log.substring(start, end).trim()
+            start = end + 1
+            if (token.isEmpty()) continue
+            val move = parseMove(gsc, token)
+            if (move == EncodedMove.NONE || !gsc.isMoveLegal(move)) return ReplayResult(index, movesPlayed, token, gsc.isGameWon())
+            val moveToPlay = gsc.toMove(move)
+            gsc.performMove(moveToPlay)
+            val card = moveToPlay.cardToUpdate
+            if (card != null) gsc.revealCard(card, replayer.tableauIds[card.stackID - 1][gsc.getCardStackFromID(card.stackID).size - 1])
+            movesPlayed++
+        }
+        return ReplayResult(index, movesPlayed, null, gsc.isGameWon())
+    }
+
+    /**
+     * Deals replayer.deck with every card known, as DealSolver does: the stock is revealed at once,
+     * the tableau cards as they are turned over.
+     */
+    private fun deal(replayer: Replayer) {
+        val gsc = replayer.gsc
+        val deck = replayer.deck
+        gsc.resetGameState()
+        var next = CardRegistry.CARDS
+        for (i in 0..6) {
+            for (j in i..6) replayer.tableauIds[j][i] = deck[--next]
+        }
+        for (j in 0..6) gsc.revealCard(gsc.gameState.tableaux[j].tail!!, replayer.tableauIds[j][j])
+        val stock = gsc.gameState.stock
+        for (i in 0 until stock.size) gsc.revealCard(stock[i], deck[i])
+    }
+
+    /**
+     * Encodes a move of the log, or returns NONE if it is malformed or its card can not be moved.
+     */
+    private fun parseMove(gsc: GameStateController, token: String): Int {
+        if (token == "T") return EncodedMove.encode(MoveType.DRAW_STOCK)
+        if (token == "S") return EncodedMove.encode(MoveType.FLIP_TALON)
+        val dash = token.indexOf('-')
+        if (dash < 2) return EncodedMove.NONE
+        val id = try {
+            CardRegistry.fromStringDanish(token.substring(0, dash))
+        } catch (e: Exception) {
+            return EncodedMove.NONE
+        }
+        val target = token.substring(dash + 1)
+        val talon = gsc.gameState.talon
+
+        if (target == "F") {
+            if (talon.tail?.id == id) return EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, 0, cardsToMove = 1)
+            for (column in gsc.gameState.tableaux) {
+                if (column.tail?.id == id) return EncodedMove.encode(MoveType.MOVE_TO_FOUNDATION, column.stackID, cardsToMove = 1)
+            }
+            return EncodedMove.NONE
+        }
+        val targetStackID = target.toIntOrNull() ?: return EncodedMove.NONE
+        if (targetStackID !in 1..7) return EncodedMove.NONE
+        if (talon.tail?.id == id) return EncodedMove.encode(MoveType.MOVE_FROM_TALON, 0, targetStackID, 1)
+        for (foundation in gsc.gameState.foundations) {
+            if (foundation.tail?.id == id) return EncodedMove.encode(MoveType.MOVE_FROM_FOUNDATION, foundation.stackID, targetStackID, 1)
+        }
+        for (column in gsc.gameState.tableaux) {
+            val position = faceUpPosition(column, id)
+            if (position != -1) return EncodedMove.encode(MoveType.MOVE_STACK, column.stackID, targetStackID, column.size - position)
+        }
+        return EncodedMove.NONE
+    }
+
+    private fun faceUpPosition(column: CardStack, id: Int): Int {
+        for (i in column.size - 1 downTo 0) {
+            val card = column[i]
+            if (card.isHidden()) return -1
+            if (card.id == id) return i
+        }
+        return -1
+    }
+
+    companion object {
+        private const val LOGS_PER_TASK = 64
+        private const val LOGS_PER_BATCH = 1 shl 16
+    }
+}
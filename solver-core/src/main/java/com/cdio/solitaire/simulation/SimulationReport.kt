@@ -0,0 +1,105 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.model.MoveType
+import java.io.Writer
+import java.util.*
+
+/**
+ * Per-game records of a simulation run, from SimulationRunner.runWithReport, with the totals in result
+ * and the wall time of every nextMove call in latency. Game number i is deck number i of the DeckSource.
+ * foundationCards is the number of cards on the foundations when the game ended.
+ */
+class SimulationReport(
+    val result: SimulationResult,
+    val won: BooleanArray,
+    val moves: IntArray,
+    val foundationCards: IntArray,
+    val nanos: LongArray,
+    private val moveCounts: IntArray,
+    val latency: LatencyHistogram
+) {
+    val games: Int
+        get() = won.size
+
+    fun moveCount(game: Int, moveType: MoveType): Int {
+        return moveCounts[game * MOVE_TYPES.size + moveType.ordinal]
+    }
+
+    /**
+     * Average number of cards that reached the foundations in the games that were lost.
+     */
+    fun averageFoundationCardsInLostGames(): Double {
+        var lost = 0
+        var cards = 0L
+        for (game in 0 until games) {
+            if (won[game]) continue
+            lost++
+            cards += foundationCards[game]
+        }
+        return if (lost == 0) 0.0 else cards.toDouble() / lost
+    }
+
+    /**
+     * Writes one line per game: its number, outcome, moves, foundation cards, wall time and the number
+     * of moves of every MoveType.
+     */
+    fun writeCsv(writer: Writer) {
+        writer.write("game,won,moves,foundationCards,nanos")
+        for (moveType in MOVE_TYPES) writer.write(",$moveType")
+        writer.write("\n")
+        for (game in 0 until games) {
+            writer.write("$game,${won[game]},${moves[game]},${foundationCards[game]},${nanos[game]}")
+            for (moveType in MOVE_TYPES) writer.write(",${moveCount(game, moveType)}")
+            writer.write("\n")
+        }
+        writer.flush()
+    }
+
+    /**
+     * Writes the summary, and the games if withGames is true, as a JSON object.
+     */
+    fun writeJson(writer: Writer, withGames: Boolean = false) {
+        val interval = result.winRateInterval()
+        writer.write("{\n")
+        writer.write("  \"games\": $games,\n")
+        writer.write("  \"gamesWon\": ${result.gamesWon},\n")
+        writer.write("  \"winRate\": ${number(result.winRate())},\n")
+        writer.write("  \"winRate95\": [${number(interval[0])}, ${number(interval[1])}],\n")
+        writer.write("  \"averageMovesInWonGames\": ${number(result.averageMovesInWonGames())},\n")
+        writer.write("  \"averageFoundationCardsInLostGames\": ${number(averageFoundationCardsInLostGames())},\n")
+        writer.write("  \"moveCounts\": {")
+        writer.write(MOVE_TYPES.joinToString(", ") { "\"$it\": ${result.moveCounts[it.ordinal]}" })
+        writer.write("},\n")
+        writer.write("  \"latencyNanos\": {\"count\": ${latency.count}, \"mean\": ${number(latency.mean())}, ")
+        writer.write("\"p50\": ${latency.percentile(0.5)}, \"p99\": ${latency.percentile(0.99)}, \"max\": ${latency.max}}")
+        if (withGames) {
+            writer.write(",\n  \"gameRecords\": [\n")
+            for (game in 0 until games) {
+                writer.write("    {\"game\": $game, \"won\": ${won[game]}, \"moves\": ${moves[game]}, ")
+                writer.write("\"foundationCards\": ${foundationCards[game]}, \"nanos\": ${nanos[game]}, \"moveCounts\": [")
+                writer.write(MOVE_TYPES.joinToString(", ") { moveCount(game, it).toString() })
+                writer.write(if (game == games - 1) "]}\n" else "]},\n")
+            }
+            writer.write("  ]")
+        }
+        writer.write("\n}\n")
+        writer.flush()
+    }
+
+    override fun toString(): String {
+        val interval = result.winRateInterval()
+        var ret = result.toString()
+        ret += "Win percentage, 95%% confidence: %.2f-%.2f\n".format(Locale.ROOT, interval[0] * 100, interval[1] * 100)
+        ret += "Average foundation cards in lost games: ${averageFoundationCardsInLostGames()}\n"
+        ret += "Move latency: $latency\n"
+        return ret
+    }
+
+    companion object {
+        private val MOVE_TYPES = MoveType.values()
+
+        private fun number(value: Double): String = String.format(Locale.ROOT, "%.6f", value)
+
+        internal fun perGameMoveCounts(games: Int): IntArray = IntArray(games * MOVE_TYPES.size)
+    }
+}
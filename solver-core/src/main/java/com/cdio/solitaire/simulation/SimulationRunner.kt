@@ -0,0 +1,232 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.MoveType
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Totals of a simulation run. moveCounts is indexed by MoveType ordinal.
+ */
+class SimulationResult(
+    val games: Long,
+    val gamesWon: Long,
+    val movesInWonGames: Long,
+    val moveCounts: LongArray
+) {
+    fun winRate(): Double {
+        return if (games == 0L) 0.0 else gamesWon.toDouble() / games
+    }
+
+    /**
+     * Wilson score interval of the win rate, as {low, high}. z = 1.96 gives a 95% confidence interval.
+     */
+    fun winRateInterval(z: Double = 1.96): DoubleArray {
+        if (games == 0L) return doubleArrayOf(0.0, 1.0)
+        val p = winRate()
+        val z2n = z * z / games
+        val centre = (p + z2n / 2) / (1 + z2n)
+        val margin = z * Math.sqrt(p * (1 - p) / games + z2n / (4 * games)) / (1 + z2n)
+        return doubleArrayOf(maxOf(centre - margin, 0.0), minOf(centre + margin, 1.0))
+    }
+
+    fun averageMovesInWonGames(): Double {
+        return if (gamesWon == 0L) 0.0 else movesInWonGames.toDouble() / gamesWon
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is SimulationResult) return false
+        return games == other.games && gamesWon == other.gamesWon &&
+                movesInWonGames == other.movesInWonGames && moveCounts.contentEquals(other.moveCounts)
+    }
+
+    override fun hashCode(): Int {
+        var result = games.hashCode()
+        result = 31 * result + gamesWon.hashCode()
+        result = 31 * result + movesInWonGames.hashCode()
+        result = 31 * result + moveCounts.contentHashCode()
+        return result
+    }
+
+    override fun toString(): String {
+        var ret = "Games played: $games\nGames won: $gamesWon\n"
+        ret += "Win percentage: ${winRate() * 100}\n"
+        ret += "Average moves made: ${averageMovesInWonGames()}\n"
+        for (moveType in MoveType.values()) ret += "$moveType: ${moveCounts[moveType.ordinal]}\n"
+        return ret
+    }
+}
+
+/**
+ * Plays the decks of a DeckSource with the strategy, split over a fork-join pool. Every worker
+ * thread plays its games on its own StrategyController, and the totals are merged with lock-free
+ * counters. Each game only depends on its deck, and the totals are sums, so the result is the same
+ * for any parallelism. strategyFactory creates the StrategyController of each worker, e.g. to play
+ * with a LookaheadSearch.
+ */
+class SimulationRunner(
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val maxMoves: Int = 400,
+    private val strategyFactory: () -> StrategyController = { StrategyController() }
+) {
+
+    fun run(decks: DeckSource): SimulationResult {
+        return play(decks, Counters(null)).toResult()
+    }
+
+    /**
+     * Plays the decks like run, and also records every game and the wall time of every move.
+     */
+    fun runWithReport(decks: DeckSource): SimulationReport {
+        val records = Records(decks.size)
+        val result = play(decks, Counters(records)).toResult()
+        return SimulationReport(result, records.won, records.moves, records.foundationCards, records.nanos, records.moveCounts, records.latency)
+    }
+
+    private fun play(decks: DeckSource, counters: Counters): Counters {
+        if (parallelism == 1) {
+            playDecks(decks, 0, decks.size, counters) // No need for a pool.
+            return counters
+        }
+        val pool = ForkJoinPool(parallelism)
+        try {
+            pool.invoke(PlayDecks(decks, 0, decks.size, counters))
+        } finally {
+            pool.shutdown()
+        }
+        return counters
+    }
+
+    private class Counters(val records: Records?) {
+        val games = LongAdder()
+        val gamesWon = LongAdder()
+        val movesInWonGames = LongAdder()
+        val moveCounts = AtomicLongArray(MoveType.values().size)
+
+        fun toResult(): SimulationResult {
+            return SimulationResult(
+                games.sum(),
+                gamesWon.sum(),
+                movesInWonGames.sum(),
+                LongArray(moveCounts.length()) { i -> moveCounts[i] }
+            )
+        }
+    }
+
+    /**
+     * Per-game records, written by the workers at the index of their deck.
+     */
+    private class Records(games: Int) {
+        val won = BooleanArray(games)
+        val moves = IntArray(games)
+        val foundationCards = IntArray(games)
+        val nanos = LongArray(games)
+        val moveCounts = SimulationReport.perGameMoveCounts(games)
+        val latency = LatencyHistogram()
+
+        @Synchronized
+        fun addLatency(histogram: LatencyHistogram) {
+            latency.add(histogram)
+        }
+    }
+
+    /**
+     * The engine of a worker thread, reused for all the games it plays.
+     */
+    private class Player(val strategyController: StrategyController) {
+        val table = PhysicalTable()
+        val deck = IntArray(CardRegistry.CARDS)
+        val firstLayer = IntArray(7)
+        val moveCounts = LongArray(MoveType.values().size)
+    }
+
+    private val players = ThreadLocal.withInitial { Player(strategyFactory()) }
+
+    private inner class PlayDecks(
+        private val decks: DeckSource,
+        private val from: Int,
+        private val until: Int,
+        private val counters: Counters
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            if (until - from > GAMES_PER_TASK) {
+                val middle = (from + until) ushr 1
+                invokeAll(PlayDecks(decks, from, middle, counters), PlayDecks(decks, middle, until, counters))
+                return
+            }
+            playDecks(decks, from, until, counters)
+        }
+    }
+
+    private fun playDecks(decks: DeckSource, from: Int, until: Int, counters: Counters) {
+        val player = players.get()
+        val latency = if (counters.records == null) null else LatencyHistogram() // Merged once per task.
+        for (index in from until until) {
+            decks.fillDeck(index, player.deck)
+            playGame(player, counters, index, latency)
+        }
+        if (latency != null) counters.records!!.addLatency(latency)
+    }
+
+    /**
+     * Plays the deck in player.deck, the same way StrategySimulation does, and adds it to the counters.
+     * With records, the game is recorded at index and the time of every move goes into latency.
+     */
+    private fun playGame(player: Player, counters: Counters, index: Int, latency: LatencyHistogram?) {
+        val strategyController = player.strategyController
+        val gsc = strategyController.gsc
+        val table = player.table
+        val startTime = if (latency != null) System.nanoTime() else 0L
+        strategyController.reset()
+        table.deal(player.deck)
+        table.turnFirstLayer(player.firstLayer)
+        for (i in 0..6) gsc.revealCard(gsc.gameState.tableaux[i].tail!!, player.firstLayer[i])
+
+        player.moveCounts.fill(0)
+        var movesMade = 0
+        var gameWon = false
+        while (movesMade < maxMoves) {
+            val move = if (latency == null) strategyController.nextMove() else {
+                val moveStart = System.nanoTime()
+                val move = strategyController.nextMove()
+                latency.record(System.nanoTime() - moveStart)
+                move
+            }
+            movesMade++
+            table.performMove(move)
+            player.moveCounts[move.moveType.ordinal]++
+            if (move.cardToUpdate != null) gsc.revealCard(move.cardToUpdate!!, table.discoverCard(move.cardToUpdate!!.stackID))
+            if (move.moveType == MoveType.GAME_WON) {
+                gameWon = true
+                break
+            } else if (move.moveType == MoveType.GAME_LOST) break
+        }
+
+        counters.games.increment()
+        if (gameWon) {
+            strategyController.gameIsWon = true
+            counters.gamesWon.increment()
+            counters.movesInWonGames.add(movesMade.toLong())
+        }
+        for (i in player.moveCounts.indices) {
+            if (player.moveCounts[i] != 0L) counters.moveCounts.addAndGet(i, player.moveCounts[i])
+        }
+
+        val records = counters.records ?: return
+        records.won[index] = gameWon
+        records.moves[index] = movesMade
+        for (foundation in gsc.gameState.foundations) records.foundationCards[index] += foundation.size
+        records.nanos[index] = System.nanoTime() - startTime
+        val moveTypes = player.moveCounts.size
+        for (i in 0 until moveTypes) records.moveCounts[index * moveTypes + i] = player.moveCounts[i].toInt()
+    }
+
+    companion object {
+        private const val GAMES_PER_TASK = 64
+    }
+}
@@ -0,0 +1,99 @@
+package com.cdio.solitaire.simulation
+
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.controller.StrategyWeights
+import java.util.*
+
+/**
+ * Outcome of a tuning run: the best weights found, their result on the decks they were tuned on, and
+ * on validation decks that were not used for tuning, next to the result of the starting weights there.
+ * The validation results are the unbiased estimate, the tuning result favours the chosen weights.
+ */
+class TuningResult(
+    val weights: StrategyWeights,
+    val tuning: SimulationResult,
+    val validation: SimulationResult,
+    val startValidation: SimulationResult
+) {
+    override fun toString(): String {
+        return "Weights: $weights\n" +
+                "Tuning decks: ${describe(tuning)}\n" +
+                "Validation decks: ${describe(validation)}\n" +
+                "Starting weights on validation decks: ${describe(startValidation)}\n"
+    }
+
+    private fun describe(result: SimulationResult): String {
+        val interval = result.winRateInterval()
+        return "${result.gamesWon}/${result.games} won, %.2f%% (95%% CI %.2f%%-%.2f%%)"
+            .format(Locale.ROOT, result.winRate() * 100, interval[0] * 100, interval[1] * 100)
+    }
+}
+
+/**
+ * Tunes StrategyWeights for the win rate with a (1+lambda) evolution strategy. Every generation,
+ * candidatesPerGeneration mutations of the best weights so far are played on the same games decks, and
+ * a candidate that wins more of them takes over. Since all candidates play the same decks (common
+ * random numbers), differences in wins come from the weights and not from the luck of the deal, so
+ * far fewer games are needed to tell candidates apart. The step size grows after a generation with an
+ * improvement and shrinks after one without.
+ *
+ * Each candidate is simulated by a SimulationRunner over all parallelism threads. Everything is
+ * derived from seed, so a tuning run can be repeated.
+ */
+class WeightTuner(
+    private val games: Int = 5000,
+    private val generations: Int = 20,
+    private val candidatesPerGeneration: Int = 8,
+    private val seed: Long = 0L,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val maxMoves: Int = 400
+) {
+    /**
+     * Number of candidates simulated in the last call to tune.
+     */
+    var candidatesPlayed = 0
+        private set
+
+    fun tune(start: StrategyWeights = StrategyWeights.DEFAULT, log: (String) -> Unit = {}): TuningResult {
+        val decks = SeededDeckSource(seed, games)
+        val random = Random(seed)
+        var best = start
+        var bestResult = evaluate(best, decks)
+        var stepSize = INITIAL_STEP_SIZE
+        candidatesPlayed = 1
+        for (generation in 1..generations) {
+            var improved = false
+            for (i in 0 until candidatesPerGeneration) {
+                val candidate = best.mutate(random, stepSize)
+                if (candidate == best) continue
+                val result = evaluate(candidate, decks)
+                candidatesPlayed++
+                if (result.gamesWon > bestResult.gamesWon) {
+                    best = candidate
+                    bestResult = result
+                    improved = true
+                }
+            }
+            stepSize = if (improved) minOf(stepSize * STEP_GROWTH, MAX_STEP_SIZE) else maxOf(stepSize / STEP_GROWTH, MIN_STEP_SIZE)
+            log("Generation $generation: ${bestResult.gamesWon}/$games won with $best")
+        }
+
+        val validationDecks = SeededDeckSource(seed xor VALIDATION_SEED, games)
+        return TuningResult(best, bestResult, evaluate(best, validationDecks), evaluate(start, validationDecks))
+    }
+
+    /**
+     * Plays the decks with the given weights.
+     */
+    fun evaluate(weights: StrategyWeights, decks: DeckSource): SimulationResult {
+        return SimulationRunner(parallelism, maxMoves) { StrategyController(weights = weights) }.run(decks)
+    }
+
+    companion object {
+        private const val INITIAL_STEP_SIZE = 0.2
+        private const val MIN_STEP_SIZE = 0.02
+        private const val MAX_STEP_SIZE = 1.0
+        private const val STEP_GROWTH = 1.5
+        private const val VALIDATION_SEED = 0x5DEECE66DL
+    }
+}
@@ -0,0 +1,67 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.DealSolver
+import com.cdio.solitaire.controller.SolverOutcome
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.PackedGameState
+import com.cdio.solitaire.simulation.*
+import org.junit.Assert.*
+import org.junit.Test
+
+class DealSolverTest {
+    @Test
+    fun run_solvesCompetitionDecksIndependentOfParallelism() {
+        val decks = ListDeckSource(CompetitionDecks.decks.subList(0, 6))
+        val solver = { DealSolver(maxNodes = 50_000, timeBudgetMillis = 600_000) }
+        val sequential = DealSolverRunner(1, solver).run(decks)
+        val parallel = DealSolverRunner(3, solver).run(decks)
+        assertEquals(sequential.map { it.toString() }, parallel.map { it.toString() })
+
+        val solved = sequential.filter { it!!.outcome == SolverOutcome.SOLVED }
+        assertFalse(solved.isEmpty())
+        for (result in solved) assertEquals(result!!.moves, result.solution.count { it == ',' })
+    }
+
+    @Test
+    fun solve_movesPartsOfRunsThatFreeNoCardForItsFoundation() {
+        // Q♦ has to go from K♠ onto K♣, taken down from its foundation, for K♠ to follow Q♠ from the
+        // stock. Moving parts of runs only to free the card under them for its foundation, no win
+        // is found, which the solver once took for UNSOLVABLE.
+        val position = position(
+            foundationTails = listOf("K13", "R9", "H13", "S10"),
+            tableaux = listOf(listOf("S11"), listOf(), listOf(), listOf(), listOf(), listOf("R13"), listOf("S13", "R12")),
+            stock = listOf("R11", "R10", "S12")
+        )
+        val result = DealSolver(maxNodes = 50_000, timeBudgetMillis = 600_000).solve(position)
+        assertEquals(SolverOutcome.SOLVED, result.outcome)
+    }
+
+    @Test
+    fun solve_walksTheStockAroundMoreThanOnce() {
+        // The win plays cards that take more stock moves in a row to bring up than a round through
+        // a full stock, which was as far as the solver looked.
+        val deck = IntArray(CardRegistry.CARDS)
+        SeededDeckSource(1L, 2466).fillDeck(2465, deck)
+        val result = DealSolver(maxNodes = 200_000, timeBudgetMillis = 600_000, improveSolution = false).solve(deck)
+        assertEquals(SolverOutcome.SOLVED, result.outcome)
+    }
+
+    /**
+     * Packs a position without hidden cards from cards in Danish notation, stacks listed head first.
+     * A foundation is given by its tail.
+     */
+    private fun position(foundationTails: List<String>, tableaux: List<List<String>>, stock: List<String>): PackedGameState {
+        val stacks = ArrayList<List<String>>()
+        stacks.add(listOf()) // Talon.
+        stacks.addAll(tableaux)
+        for (tail in foundationTails) stacks.add((1..tail.substring(1).toInt()).map { "${tail[0]}$it" })
+        stacks.add(stock)
+        val bytes = ByteArray(PackedGameState.STACKS + stacks.sumOf { it.size })
+        var offset = PackedGameState.STACKS
+        for ((stackID, stack) in stacks.withIndex()) {
+            bytes[stackID] = stack.size.toByte()
+            for (card in stack) bytes[offset++] = CardRegistry.fromStringDanish(card).toByte()
+        }
+        return PackedGameState.fromByteArray(bytes)
+    }
+}
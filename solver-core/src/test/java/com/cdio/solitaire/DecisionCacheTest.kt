@@ -0,0 +1,123 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.DecisionCache
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.simulation.CompetitionDecks
+import com.cdio.solitaire.simulation.SeededDeckSource
+import com.cdio.solitaire.simulation.SimulationRunner
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class DecisionCacheTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun cachedDecisions_playLikeTheStrategyAcrossRuns() {
+        val decks = SeededDeckSource(5L, 300)
+        val file = folder.root.resolve("decisions.bin")
+        val expected = SimulationRunner(parallelism = 2).run(decks)
+
+        val cache = DecisionCache.open(file, 1L)
+        assertEquals(expected, run(decks, cache))
+        cache.save()
+
+        val reloaded = DecisionCache.open(file, 1L)
+        assertEquals(cache.size, reloaded.size)
+        assertEquals(expected, run(decks, reloaded))
+        assertEquals(cache.size, reloaded.size) // Nothing new was decided.
+        assertTrue(reloaded.hits > 0)
+
+        assertEquals(0, DecisionCache.open(file, 2L).size) // Written for another strategy.
+    }
+
+    @Test
+    fun put_evictsLeastRecentlyUsed() {
+        val cache = DecisionCache(folder.root.resolve("lru.bin"), 0L, maxEntries = 2)
+        val move = EncodedMove.encode(MoveType.DRAW_STOCK, score = 8)
+        cache.put(1L, move, EncodedMove.NONE)
+        cache.put(2L, move, EncodedMove.NONE)
+        cache.get(1L)
+        cache.put(3L, move, EncodedMove.NONE)
+        assertEquals(DecisionCache.MISSING, cache.get(2L))
+        assertEquals(move, DecisionCache.move(cache.get(1L)))
+        assertEquals(EncodedMove.NONE, DecisionCache.followUpMove(cache.get(3L)))
+    }
+
+    @Test
+    fun putAndGet_matchALinkedHashMapInAccessOrder() {
+        val cache = DecisionCache(folder.root.resolve("lru.bin"), 0L, maxEntries = 50)
+        val expected = object : LinkedHashMap<Long, Int>(16, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, Int>?) = size > 50
+        }
+        val random = java.util.Random(3)
+        for (i in 0 until 20_000) {
+            // More keys than fit, sharing few slots, so entries are evicted and moved back often.
+            val hash = random.nextInt(120).toLong() shl 35
+            if (random.nextBoolean()) {
+                val move = EncodedMove.encode(MoveType.DRAW_STOCK, score = i % 1000)
+                cache.put(hash, move, EncodedMove.NONE)
+                expected[hash] = move
+            } else {
+                val decision = cache.get(hash)
+                val move = expected[hash]
+                if (move == null) assertEquals(DecisionCache.MISSING, decision)
+                else assertEquals(move, DecisionCache.move(decision))
+            }
+            assertEquals(expected.size, cache.size)
+        }
+    }
+
+    @Test
+    fun chooseMove_decidesAgainForAnIllegalCachedMove() {
+        val strategyController = StrategyController()
+        DataSource(CompetitionDecks.decks[0]).revealFirstLayer(strategyController.gsc)
+        val move = strategyController.chooseMove()
+
+        val cache = DecisionCache(folder.root.resolve("decisions.bin"), 0L)
+        // As if another position with the same hash had been cached: no foundation has a card yet.
+        cache.put(strategyController.gsc.hash, EncodedMove.encode(MoveType.MOVE_FROM_FOUNDATION, 8, 1, 1), EncodedMove.NONE)
+        strategyController.decisionCache = cache
+        assertEquals(move, strategyController.chooseMove())
+        assertEquals(move, DecisionCache.move(cache.get(strategyController.gsc.hash)))
+    }
+
+    @Test
+    fun load_deletesInvalidFiles() {
+        val file = folder.root.resolve("decisions.bin")
+        val cache = DecisionCache(file, 1L)
+        cache.put(1L, EncodedMove.encode(MoveType.DRAW_STOCK, score = 8), EncodedMove.NONE)
+        cache.save()
+        val valid = file.readBytes()
+
+        val badMagic = valid.copyOf()
+        badMagic[0] = 0
+        for (bytes in listOf(badMagic, valid.copyOf(10), valid.copyOf(valid.size - 1))) {
+            file.writeBytes(bytes)
+            val reloaded = DecisionCache(file, 1L)
+            assertFalse(reloaded.load())
+            assertEquals(0, reloaded.size)
+            assertFalse(file.exists())
+        }
+
+        file.writeBytes(valid)
+        assertFalse(DecisionCache(file, 2L).load())
+        assertTrue(file.exists()) // Only written for another strategy, not invalid.
+    }
+
+    @Test
+    fun strategyKey_coversVersionAndWeights() {
+        val strategyController = StrategyController()
+        assertEquals(StrategyController.STRATEGY_VERSION.toLong(), strategyController.strategyKey ushr 32)
+        val key = strategyController.strategyKey
+        strategyController.weights = strategyController.weights.mutate(java.util.Random(1), 0.5)
+        assertNotEquals(key, strategyController.strategyKey)
+    }
+
+    private fun run(decks: SeededDeckSource, cache: DecisionCache) =
+        SimulationRunner(parallelism = 2) { StrategyController().also { it.decisionCache = cache } }.run(decks)
+}
@@ -0,0 +1,64 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.simulation.*
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class DeckCorpusTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun corpus_roundTripsInEveryFormat() {
+        val decks = SeededDeckSource(21L, 1000)
+        val expected = IntArray(52)
+        val deck = IntArray(52)
+        for (format in DeckFormat.values()) {
+            val file = folder.newFile("$format.decks")
+            DeckCorpus.write(file, decks, format, 21L)
+            assertEquals(DeckCorpus.HEADER_BYTES + 1000L * format.bytesPerDeck, file.length())
+
+            val mapped = MappedDeckSource(file)
+            assertEquals(1000, mapped.size)
+            assertEquals(21L, mapped.seed)
+            DeckCorpusReader(file).use { reader ->
+                for (index in 0 until decks.size) {
+                    decks.fillDeck(index, expected)
+                    assertTrue(reader.read(deck))
+                    assertArrayEquals(expected, deck)
+                    mapped.fillDeck(index, deck)
+                    assertArrayEquals(expected, deck)
+                }
+                assertFalse(reader.read(deck))
+            }
+        }
+    }
+
+    @Test
+    fun rank_roundTripsExtremeDecks() {
+        val file = folder.newFile("extreme.decks")
+        val sorted = IntArray(52) { it }
+        val reversed = IntArray(52) { 51 - it }
+        DeckCorpusWriter(file).use { writer ->
+            writer.write(sorted)
+            writer.write(reversed)
+        }
+        val mapped = MappedDeckSource(file)
+        val deck = IntArray(52)
+        mapped.fillDeck(0, deck)
+        assertArrayEquals(sorted, deck)
+        mapped.fillDeck(1, deck)
+        assertArrayEquals(reversed, deck)
+    }
+
+    @Test
+    fun mappedDecks_simulateLikeTheirSource() {
+        val decks = SeededDeckSource(8L, 300)
+        val file = folder.newFile("simulation.decks")
+        DeckCorpus.write(file, decks, seed = 8L)
+        val runner = SimulationRunner(parallelism = 2)
+        assertEquals(runner.run(decks), runner.run(MappedDeckSource(file)))
+    }
+}
@@ -0,0 +1,77 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.model.ArrayCardStack
+import com.cdio.solitaire.model.Card
+import com.cdio.solitaire.model.CardStack
+import com.cdio.solitaire.model.LinkedCardStack
+import com.cdio.solitaire.simulation.EngineFuzzer
+import org.junit.Assert.*
+import org.junit.Test
+
+class EngineFuzzerTest {
+    @Test
+    fun arrayStacks_agreeWithLinkedStacks() {
+        val report = EngineFuzzer(parallelism = 2).run(seed = 1L, cases = 200)
+        assertEquals(200L * 200, report.steps)
+        assertTrue(report.toString(), report.failures.isEmpty())
+    }
+
+    /**
+     * Moves runs of cards in the wrong order.
+     */
+    private class ReversingStack(private val stack: CardStack) : CardStack by stack {
+        override fun moveCardsTo(targetStack: CardStack, cardsToMove: Int) {
+            val moved = stack.popStack(cardsToMove)
+            while (moved.size > 0) targetStack.pushCard(moved.popCard())
+        }
+    }
+
+    @Test
+    fun failures_areShrunkAndReproducible() {
+        val fuzzer = EngineFuzzer(parallelism = 1, candidateFactory = { GameStateController { ReversingStack(ArrayCardStack(it)) } })
+        val report = fuzzer.run(seed = 1L, cases = 20)
+        assertFalse(report.failures.isEmpty())
+        for (failure in report.failures) {
+            assertTrue(failure.actions.size < 200)
+            assertEquals(failure.message, fuzzer.reproduce(failure.deck, failure.actions))
+            // Without the last action the case passes, so it is minimal at the end.
+            assertNull(fuzzer.reproduce(failure.deck, failure.actions.copyOf(failure.actions.size - 1)))
+        }
+    }
+
+    /**
+     * Shows the talon card to the controller as the same rank of a suit of the other color, so a talon
+     * card goes on a card of its own color: a rules bug that the engines of both stacks share.
+     */
+    private class OtherColorTalon(private val stack: CardStack) : CardStack by stack {
+        override fun getCardFromTail(position: Int): Card {
+            val card = stack.getCardFromTail(position)
+            if (stack.stackID != 0 || card.isHidden()) return card
+            return Card(card.stackID, (card.id / 13 xor 1) * 13 + card.id % 13)
+        }
+
+        override fun moveCardsTo(targetStack: CardStack, cardsToMove: Int) {
+            stack.moveCardsTo((targetStack as OtherColorTalon).stack, cardsToMove)
+        }
+    }
+
+    @Test
+    fun sharedRulesBug_isFound() {
+        val fuzzer = EngineFuzzer(
+            parallelism = 2,
+            referenceFactory = { GameStateController { OtherColorTalon(LinkedCardStack(it)) } },
+            candidateFactory = { GameStateController { OtherColorTalon(ArrayCardStack(it)) } }
+        )
+        val report = fuzzer.run(seed = 1L, cases = 50)
+        assertFalse(report.failures.isEmpty())
+        for (failure in report.failures) {
+            assertTrue(failure.message, failure.message.contains("MOVE_FROM_TALON"))
+            assertTrue(
+                failure.message,
+                failure.message.contains("rules: false, reference: true, candidate: true") ||
+                        failure.message.contains("rules: true, reference: false, candidate: false")
+            )
+        }
+    }
+}
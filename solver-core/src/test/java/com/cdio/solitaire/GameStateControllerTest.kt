@@ -0,0 +1,125 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.controller.Zobrist
+import com.cdio.solitaire.model.*
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+class GameStateControllerTest {
+    private val deck =
+        "R13, S10, R9, K7, R4, R2, K5, S6, R12, S9, K13, H1, H10, R1, K8, H13, S13, H6, R7, S3, K10, R10, R5, H7, H3, S11, R8, K1, R6, K9, K12, S5, K3, K4, S7, H11, H8, R11, H12, R3, S8, H5, H9, S4, S12, S2, K6, S1, K11, H4, H2, K2"
+
+    /**
+     * Plays the deck with the strategy until the game ends, and returns the position after every move.
+     */
+    private fun playGame(strategyController: StrategyController, danish: StringBuilder = StringBuilder()): List<PackedGameState> {
+        val gsc = strategyController.gsc
+        val dataSource = DataSource(deck)
+        dataSource.revealFirstLayer(gsc)
+
+        val positions = mutableListOf(gsc.packGameState())
+        for (round in 0 until 200) {
+            val move = strategyController.nextMove()
+            if (move.moveType == MoveType.GAME_WON || move.moveType == MoveType.GAME_LOST) {
+                gsc.undoMove()
+                break
+            }
+            danish.append(move.toStringDanish())
+            dataSource.playMove(gsc, move)
+            assertEquals(Zobrist.hash(gsc.gameState), gsc.hash)
+            positions.add(gsc.packGameState())
+        }
+        return positions
+    }
+
+    @Test
+    fun undoMove_restoresEveryPosition() {
+        val strategyController = StrategyController()
+        val gsc = strategyController.gsc
+        val positions = playGame(strategyController)
+        val hashes = positions.map { position -> GameStateController().also { it.loadGameState(position) }.hash }
+
+        // The position after each move is restored, except for cards revealed by later moves.
+        for (i in positions.size - 2 downTo 0) {
+            val move = gsc.undoMove()
+            assertEquals(i + 1, gsc.gameState.moves.size)
+            assertEquals(positions[i], gsc.packGameState())
+            assertEquals(hashes[i], gsc.hash)
+            if (move.cardToUpdate != null) assertTrue(move.cardToUpdate!!.isHidden())
+        }
+    }
+
+    @Test
+    fun replay_reachesEveryPosition() {
+        val strategyController = StrategyController()
+        val gsc = strategyController.gsc
+        val danish = StringBuilder()
+        val positions = playGame(strategyController, danish)
+        assertEquals(danish.toString(), gsc.movesAsString())
+
+        val bytes = ByteArrayOutputStream()
+        gsc.gameState.moves.writeTo(bytes)
+        val log = MoveLog.readFrom(ByteArrayInputStream(bytes.toByteArray()))
+        assertEquals(positions.size, log.size)
+
+        val replayer = GameStateController()
+        for (i in positions.indices) {
+            replayer.replay(log, i + 1)
+            assertEquals(positions[i], replayer.packGameState())
+            assertEquals(Zobrist.hash(replayer.gameState), replayer.hash)
+        }
+        assertEquals(gsc.movesAsString(), replayer.movesAsString())
+
+        gsc.replay(gsc.gameState.moves, 1) // Replaying its own log back to the deal.
+        assertEquals(positions[0], gsc.packGameState())
+    }
+
+    @Test
+    fun packGameState_roundTrips() {
+        val gsc = GameStateController()
+        gsc.revealCard(gsc.gameState.tableaux[3].tail!!, Rank.FIVE, Suit.HEARTS)
+        val packed = gsc.packGameState()
+        assertEquals(51, packed.hiddenCards())
+        assertEquals(Card(-1, Rank.FIVE, Suit.HEARTS).id, packed.cardAt(4, 3))
+        assertEquals(PackedGameState.HIDDEN_CARD, packed.cardAt(4, 2))
+
+        val copy = GameStateController()
+        copy.loadGameState(packed)
+        assertEquals(packed, copy.packGameState())
+        assertEquals(gsc.hash, copy.hash)
+    }
+
+    @Test
+    fun loadGameState_reusesStacksAndCardSlots() {
+        val positions = playGame(StrategyController())
+        for (factory in listOf<(Int) -> CardStack>(::LinkedCardStack, ::ArrayCardStack)) {
+            val gsc = GameStateController(factory)
+            val stacks = Array(PackedGameState.STACKS) { gsc.getCardStackFromID(it) }
+            val slots = HashSet<Card>()
+            for (stack in stacks) for (i in 0 until stack.size) slots.add(stack[i])
+
+            for (position in positions.reversed()) {
+                gsc.loadGameState(position)
+                assertEquals(position, gsc.packGameState())
+                assertEquals(Zobrist.hash(gsc.gameState), gsc.hash)
+                assertEquals(1, gsc.gameState.moves.size)
+                for (stackID in stacks.indices) {
+                    val stack = gsc.getCardStackFromID(stackID)
+                    assertSame(stacks[stackID], stack)
+                    for (i in 0 until stack.size) assertTrue(stack[i] in slots)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun fromByteArray_rejectsHiddenCardsWithAnIdentity() {
+        val bytes = GameStateController().packGameState().toByteArray()
+        bytes[PackedGameState.STACKS + 1] = (0x40 or Card(-1, Rank.FIVE, Suit.HEARTS).id).toByte()
+        assertThrows(Exception::class.java) { PackedGameState.fromByteArray(bytes) }
+    }
+}
@@ -0,0 +1,33 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.LookaheadSearch
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.simulation.CompetitionDecks
+import org.junit.Assert.*
+import org.junit.Test
+
+class LookaheadSearchTest {
+    @Test
+    fun bestMove_leavesPositionUnchangedAndIsLegal() {
+        val strategyController = StrategyController()
+        val gsc = strategyController.gsc
+        val search = LookaheadSearch(strategyController, maxDepth = 4, timeBudgetMillis = 60_000, maxNodes = 20_000)
+        val dataSource = DataSource(CompetitionDecks.decks[0])
+        dataSource.revealFirstLayer(gsc)
+
+        for (round in 0 until 100) {
+            val packed = gsc.packGameState()
+            val hash = gsc.hash
+            val move = search.bestMove()
+            assertEquals(packed, gsc.packGameState())
+            assertEquals(hash, gsc.hash)
+            if (move == EncodedMove.NONE || gsc.isGameWon()) break
+            assertTrue(gsc.isMoveLegal(move))
+
+            val moveToPlay = gsc.toMove(move)
+            gsc.performMove(moveToPlay)
+            dataSource.playMove(gsc, moveToPlay)
+        }
+    }
+}
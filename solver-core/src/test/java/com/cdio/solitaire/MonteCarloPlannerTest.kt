@@ -0,0 +1,25 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.MonteCarloPlanner
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.simulation.CompetitionDecks
+import com.cdio.solitaire.simulation.ListDeckSource
+import com.cdio.solitaire.simulation.SimulationRunner
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.concurrent.ForkJoinPool
+
+class MonteCarloPlannerTest {
+    @Test
+    fun bestMove_isIndependentOfParallelism() {
+        val decks = ListDeckSource(CompetitionDecks.decks.subList(0, 2))
+        val pool = ForkJoinPool(4)
+        fun play(parallelism: Int) = SimulationRunner(1, maxMoves = 60, strategyFactory = {
+            StrategyController().also {
+                it.planner = MonteCarloPlanner(it, 60_000, maxSamples = 8, playoutMoves = 60, parallelism = parallelism, pool = pool)
+            }
+        }).run(decks)
+        assertEquals(play(1), play(4))
+        pool.shutdown()
+    }
+}
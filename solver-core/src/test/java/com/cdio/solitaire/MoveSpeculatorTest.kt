@@ -0,0 +1,111 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.DecisionCache
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.controller.MoveSpeculator
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.EncodedMove
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.simulation.CompetitionDecks
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MoveSpeculatorTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun speculatedMoves_matchChosenMoves() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            for (deck in CompetitionDecks.decks.subList(0, 3)) {
+                val speculator = MoveSpeculator(executor = executor)
+                assertEquals(play(deck, null), play(deck, speculator))
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun speculatedMoves_areCachedWhenPlayed() {
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val deck = CompetitionDecks.decks[0]
+            val decisionCache = DecisionCache(folder.root.resolve("decisions.bin"), 0L)
+            assertEquals(play(deck, null), play(deck, MoveSpeculator(executor = executor), decisionCache))
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun cancel_discardsMovesOfTasksStillRunning() {
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val executor = Executors.newSingleThreadExecutor()
+        // The worker controller is made inside the first task, which then runs while cancel is called.
+        val speculator = MoveSpeculator({ started.countDown(); release.await(); StrategyController() }, executor)
+        val strategyController = StrategyController()
+        val gsc = strategyController.gsc
+        val dataSource = DataSource(CompetitionDecks.decks[0])
+        dataSource.revealFirstLayer(gsc)
+        var move = strategyController.nextMove()
+        while (move.cardToUpdate == null || strategyController.pendingFollowUpMove != EncodedMove.NONE) {
+            dataSource.playMove(gsc, move)
+            move = strategyController.nextMove()
+        }
+
+        val card = move.cardToUpdate!!
+        val position = gsc.packGameState()
+        val index = gsc.getCardStackFromID(card.stackID).indexOf(card)
+        speculator.speculate(strategyController, card)
+        started.await()
+        speculator.cancel()
+        release.countDown()
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES))
+
+        val copy = GameStateController()
+        for (id in position.unseenCards()) {
+            copy.loadGameState(position)
+            copy.revealCard(copy.getCardStackFromID(card.stackID)[index], id)
+            assertNull(speculator.get(copy.hash))
+        }
+    }
+
+    /**
+     * Plays a deck, and checks that every speculated move that is played goes to decisionCache.
+     */
+    private fun play(deck: String, speculator: MoveSpeculator?, decisionCache: DecisionCache? = null): String {
+        val strategyController = StrategyController()
+        strategyController.speculator = speculator
+        strategyController.decisionCache = decisionCache
+        val gsc = strategyController.gsc
+        val dataSource = DataSource(deck)
+        dataSource.revealFirstLayer(gsc)
+
+        for (round in 0 until 400) {
+            val hash = gsc.hash
+            val speculated = if (strategyController.isNextMoveForced()) null else speculator?.get(hash)
+            val move = strategyController.nextMove()
+            if (decisionCache != null && speculated != null && speculated.move != EncodedMove.NONE)
+                assertEquals(speculated.move, DecisionCache.move(decisionCache.get(hash)))
+            if (move.moveType == MoveType.GAME_WON || move.moveType == MoveType.GAME_LOST) break
+            dataSource.performMove(move)
+            if (move.cardToUpdate != null && speculator != null) {
+                speculator.speculate(strategyController, move.cardToUpdate!!)
+                speculator.await()
+            }
+            dataSource.revealCard(gsc, move)
+            if (move.cardToUpdate != null && speculator != null && !strategyController.isNextMoveForced())
+                assertNotNull(speculator.get(gsc.hash))
+        }
+        return gsc.movesAsString()
+    }
+}
@@ -0,0 +1,49 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.DealSolver
+import com.cdio.solitaire.controller.SolverOutcome
+import com.cdio.solitaire.simulation.*
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class ReplayVerifierTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun verify_acceptsSolutionsAndFindsFirstIllegalMove() {
+        val decks = ListDeckSource(CompetitionDecks.decks.subList(0, 4))
+        val solutions = DealSolverRunner(2) { DealSolver(maxNodes = 50_000, timeBudgetMillis = 600_000) }.run(decks)
+        val logs = solutions.map { it!!.solution }
+        val results = ReplayVerifier(parallelism = 2).verify(decks, logs)
+        for (i in logs.indices) {
+            assertTrue(results[i]!!.isValid)
+            assertEquals(solutions[i]!!.moves, results[i]!!.movesPlayed)
+            assertEquals(solutions[i]!!.outcome == SolverOutcome.SOLVED, results[i]!!.won)
+        }
+
+        val solved = logs.indexOfFirst { it.isNotEmpty() }
+        val moves = logs[solved].split(",").filter { it.isNotEmpty() }
+        val corrupted = (moves.subList(0, 3) + "S" + moves.subList(3, moves.size)).joinToString(",")
+        val file = folder.newFile("logs.txt")
+        file.writeText(logs.mapIndexed { i, log -> if (i == solved) corrupted else log }.joinToString("\n"))
+        val summary = ReplayVerifier(parallelism = 1).verify(decks, file)
+        assertEquals(4L, summary.logs)
+        assertEquals(3L, summary.validLogs)
+        assertEquals(1, summary.failures.size)
+        assertEquals(solved, summary.failures[0].index)
+        assertEquals(3, summary.failures[0].movesPlayed)
+        assertEquals("S", summary.failures[0].illegalMove)
+    }
+
+    @Test
+    fun verify_rejectsMalformedMoves() {
+        val decks = ListDeckSource(CompetitionDecks.decks.subList(0, 1))
+        val verifier = ReplayVerifier(parallelism = 1)
+        for (log in listOf("X,", "K14-F,", "K1-9,", "T,K1", "T,T,T,T,T,T,T,T,T")) {
+            assertFalse(log, verifier.verify(decks, listOf(log))[0]!!.isValid)
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.simulation.LatencyHistogram
+import com.cdio.solitaire.simulation.SeededDeckSource
+import com.cdio.solitaire.simulation.SimulationRunner
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.StringWriter
+
+class SimulationRunnerTest {
+    @Test
+    fun run_isIndependentOfParallelism() {
+        val decks = SeededDeckSource(42L, 2000)
+        val sequential = SimulationRunner(parallelism = 1).run(decks)
+        val parallel = SimulationRunner(parallelism = 4).run(decks)
+        assertEquals(2000L, sequential.games)
+        assertEquals(sequential, parallel)
+    }
+
+    @Test
+    fun seededDeckSource_dealsEveryCardOnce() {
+        val deck = IntArray(52)
+        SeededDeckSource(7L, 10).fillDeck(9, deck)
+        assertEquals((0 until 52).toList(), deck.sorted())
+    }
+
+    @Test
+    fun runWithReport_recordsEveryGame() {
+        val decks = SeededDeckSource(42L, 500)
+        val report = SimulationRunner(parallelism = 2).runWithReport(decks)
+        assertEquals(SimulationRunner(parallelism = 1).run(decks), report.result)
+
+        var moves = 0L
+        var draws = 0L
+        for (game in 0 until report.games) {
+            moves += report.moves[game]
+            draws += report.moveCount(game, MoveType.DRAW_STOCK)
+            if (report.won[game]) assertEquals(52, report.foundationCards[game])
+        }
+        assertEquals(moves, report.latency.count)
+        assertEquals(report.result.moveCounts[MoveType.DRAW_STOCK.ordinal], draws)
+
+        val csv = StringWriter()
+        report.writeCsv(csv)
+        assertEquals(501, csv.toString().lines().count { it.isNotEmpty() })
+        val json = StringWriter()
+        report.writeJson(json)
+        assertTrue(json.toString().contains("\"gamesWon\": ${report.result.gamesWon},"))
+    }
+
+    @Test
+    fun latencyHistogram_percentilesAreWithinBucketPrecision() {
+        val histogram = LatencyHistogram()
+        for (nanos in 1L..100_000L) histogram.record(nanos)
+        assertEquals(100_000L, histogram.max)
+        assertEquals(100_000L, histogram.percentile(1.0))
+        assertEquals(50_000.0, histogram.percentile(0.5).toDouble(), 50_000.0 / 64)
+        assertEquals(99_000.0, histogram.percentile(0.99).toDouble(), 99_000.0 / 64)
+        assertEquals(1L, histogram.percentile(0.0))
+    }
+}
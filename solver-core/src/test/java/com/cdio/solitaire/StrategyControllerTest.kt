@@ -0,0 +1,71 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.CardRegistry
+import com.cdio.solitaire.model.MoveType
+import com.cdio.solitaire.simulation.PhysicalTable
+import com.cdio.solitaire.simulation.SeededDeckSource
+import org.junit.Assert.*
+import org.junit.Test
+
+class StrategyControllerTest {
+    private class Game(val lastMove: MoveType, val moves: Int, val flipsWithHiddenStock: Int)
+
+    /**
+     * Plays deck number index of SeededDeckSource(42) for up to 400 moves, as SimulationRunner does.
+     */
+    private fun play(index: Int, strategyController: StrategyController = StrategyController()): Game {
+        val deck = IntArray(CardRegistry.CARDS)
+        SeededDeckSource(42L, index + 1).fillDeck(index, deck)
+        strategyController.reset()
+        val gsc = strategyController.gsc
+        val table = PhysicalTable()
+        table.deal(deck)
+        val firstLayer = IntArray(7)
+        table.turnFirstLayer(firstLayer)
+        for (i in 0..6) gsc.revealCard(gsc.gameState.tableaux[i].tail!!, firstLayer[i])
+
+        var lastMove = MoveType.DEAL_CARDS
+        var moves = 0
+        var flipsWithHiddenStock = 0
+        while (moves < 400 && lastMove != MoveType.GAME_WON && lastMove != MoveType.GAME_LOST) {
+            val hiddenStock = gsc.gameState.stock.hiddenCards() + gsc.gameState.talon.hiddenCards()
+            val move = strategyController.nextMove()
+            moves++
+            if (move.moveType == MoveType.FLIP_TALON && hiddenStock > 0) flipsWithHiddenStock++
+            table.performMove(move)
+            if (move.cardToUpdate != null) gsc.revealCard(move.cardToUpdate!!, table.discoverCard(move.cardToUpdate!!.stackID))
+            lastMove = move.moveType
+        }
+        return Game(lastMove, moves, flipsWithHiddenStock)
+    }
+
+    @Test
+    fun stockCycle_endsLostGamesBeforeTheMoveCap() {
+        // The passes of this deck repeat over more than one flip, and used to run to the move cap.
+        val game = play(1)
+        assertEquals(MoveType.GAME_LOST, game.lastMove)
+        assertTrue(game.moves < 200)
+    }
+
+    @Test
+    fun stockCycle_doesNotCutShortDiscoveringTheStock() {
+        // Four flips happen while stock cards are still hidden, and the game is won.
+        val game = play(46)
+        assertEquals(4, game.flipsWithHiddenStock)
+        assertEquals(MoveType.GAME_WON, game.lastMove)
+    }
+
+    @Test
+    fun loadGameState_forgetsThePositionsOfTheLastGame() {
+        val strategyController = StrategyController()
+        val game = play(1, strategyController)
+        assertTrue(strategyController.transpositionTable.size > 0)
+        strategyController.loadGameState(strategyController.gsc.packGameState())
+        assertEquals(0, strategyController.transpositionTable.size)
+
+        val again = play(1, strategyController)
+        assertEquals(game.lastMove, again.lastMove)
+        assertEquals(game.moves, again.moves)
+    }
+}
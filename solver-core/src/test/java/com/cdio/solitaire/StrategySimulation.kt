@@ -0,0 +1,199 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.GameStateController
+import com.cdio.solitaire.controller.StrategyController
+import com.cdio.solitaire.model.*
+import com.cdio.solitaire.simulation.CompetitionDecks
+import com.cdio.solitaire.simulation.SeededDeckSource
+import com.cdio.solitaire.simulation.SimulationRunner
+import org.junit.Test
+
+class DataSource(deckString: String = "") {
+    // This essentially mimics the user actions with the physical cards that still need to be recognized
+    private val sortedDeck: Array<Card>
+    val shuffledDeck: Array<Card>
+    private val tableaux: Array<CardStack>
+    private val stock: CardStack
+    val talon: CardStack
+
+    init {
+        // Shuffle deck of cards
+        sortedDeck = createOrderedDeck()
+        if (deckString == "") {
+            shuffledDeck = sortedDeck.clone()
+            shuffledDeck.shuffle()
+        } else {
+            shuffledDeck = deckFromString(deckString)
+        }
+        val deck = CardStack(-1)
+        for (card in shuffledDeck) deck.pushCard(card)
+
+        // Create cardStacks
+        tableaux = Array(7) { i -> CardStack(i + 1) } // 1, 2, 3, 4, 5, 6, 7
+        stock = CardStack(12)
+        talon = CardStack(0)
+
+        // Deal out cards
+        for (i in 0..6) {
+            for (j in i..6) tableaux[j].pushCard(deck.popCard())
+        }
+        stock.pushStack(deck)
+    }
+
+    private fun deckFromString(deckString: String): Array<Card> {
+        val cardStrings = deckString.split(", ").toTypedArray()
+        if (cardStrings.size != 52) {
+            throw Exception("Wrong number of cards in deckString, or wrong format.")
+        }
+        return Array(cardStrings.size) { i -> cardFromString(cardStrings[i]) }
+    }
+
+    private fun cardFromString(cardString: String): Card {
+        val suit = when (cardString.first().toString()) {
+            "K" -> 0
+            "R" -> 1
+            "H" -> 2
+            "S" -> 3
+            else -> throw Exception("Wrong format of string.")
+        }
+        val rank = cardString.drop(1).toInt() - 1
+        return sortedDeck[suit * 13 + rank]
+    }
+
+    private fun createOrderedDeck(): Array<Card> {
+        return Array(52) { i ->
+            Card(
+                -1,
+                Rank.values()[i % 13 + 1],
+                Suit.values()[i / 13 + 1]
+            )
+        } // +1 is used for offsets in enums.
+    }
+
+    fun discoverCard(stackID: Int): Card {
+        return when (stackID) {
+            in 1..7 -> tableaux[stackID - 1].popCard()
+            0 -> talon.tail!!
+            else -> throw Exception("No hidden cards here.")
+        }
+    }
+
+    fun drawStock() {
+        repeat(3) { talon.pushCard(stock.popCard()) }
+    }
+
+    fun flipTalon() {
+        stock.pushStackToHead(talon)
+    }
+
+    fun updateFirstLayer(): Array<Card?> {
+        val cards = Array<Card?>(7) { null }
+        for (i in tableaux.indices) {
+            cards[i] = tableaux[i].popCard()
+        }
+        return cards
+    }
+
+    /**
+     * Turns over the first layer and reveals it to the engine, as at the start of a game.
+     */
+    fun revealFirstLayer(gsc: GameStateController) {
+        val cards = updateFirstLayer()
+        for (i in cards.indices) gsc.revealCard(gsc.gameState.tableaux[i].tail!!, cards[i]!!.rank, cards[i]!!.suit)
+    }
+
+    /**
+     * Mirrors a move performed by the engine, before its cardToUpdate is discovered.
+     */
+    fun performMove(move: Move) {
+        when (move.moveType) {
+            MoveType.MOVE_FROM_TALON -> talon.popCard()
+            MoveType.DRAW_STOCK -> drawStock()
+            MoveType.FLIP_TALON -> flipTalon()
+            MoveType.MOVE_TO_FOUNDATION -> if (move.sourceStack!!.stackID == 0) talon.popCard()
+            else -> {}
+        }
+    }
+
+    /**
+     * Reveals the card turned over by a move to the engine, if the move needs card recognition.
+     */
+    fun revealCard(gsc: GameStateController, move: Move) {
+        val cardToUpdate = move.cardToUpdate ?: return
+        val discoveredCard = discoverCard(cardToUpdate.stackID)
+        gsc.revealCard(cardToUpdate, discoveredCard.rank, discoveredCard.suit)
+    }
+
+    /**
+     * Mirrors a move performed by the engine and reveals the card it turned over, as the player and
+     * the camera do in the app.
+     */
+    fun playMove(gsc: GameStateController, move: Move) {
+        performMove(move)
+        revealCard(gsc, move)
+    }
+}
+
+class StrategySimulation {
+    @Test
+    fun simulateGame() {
+        val printSolutions = false
+        val randomSimulation = true
+        val competitionDecks = CompetitionDecks.decks
+        if (randomSimulation) {
+            // Random decks are played in parallel, see SimulationRunner. Change the seed to play other decks.
+            println(SimulationRunner().runWithReport(SeededDeckSource(0L, 50000)))
+            return
+        }
+        val iterations = competitionDecks.size
+        val strategyController = StrategyController()
+        var gamesWon = 0
+        var movesMade = 0 // in winning games this is incremented
+        for (iteration in 0 until iterations) {
+            strategyController.reset()
+            val dataSource =
+                DataSource(competitionDecks[iteration % competitionDecks.size]) // Use false for the handed in deck sorting
+            dataSource.revealFirstLayer(strategyController.gsc)
+            var gameFinished = false
+            var rounds = 400
+            val roundsMax = rounds
+            val moveCounter = Array(MoveType.values().size) { 0 }
+            while (!gameFinished && rounds != 0) {
+                rounds--
+                val moveToPlay = strategyController.nextMove()
+                moveCounter[moveToPlay.moveType.ordinal]++
+
+                // Is a card discovered? Get its values.
+                dataSource.playMove(strategyController.gsc, moveToPlay)
+
+                if (moveToPlay.moveType == MoveType.GAME_WON) {
+                    strategyController.gameIsWon = true
+                    gameFinished = true
+                } else if (moveToPlay.moveType == MoveType.GAME_LOST) {
+                    gameFinished = true
+                }
+            }
+            if (strategyController.gameIsWon) {
+                gamesWon++
+                movesMade += roundsMax - rounds
+                if (printSolutions) {
+                    var deckString = ""
+                    for (i in dataSource.shuffledDeck.indices) deckString += dataSource.shuffledDeck[51 - i].toStringDanish() + ","
+                    deckString += "\b"
+                    println("Deck used:")
+                    println(deckString)
+                    println("Moves made:")
+                    println(strategyController.gsc.movesAsString() + "\b")
+                }
+            }
+        }
+
+        println("Games won: $gamesWon")
+        if (gamesWon > 0) {
+            println("Iterations performed: $iterations")
+            println("Win percentage: " + ((gamesWon.toFloat() / iterations.toFloat()) * 100))
+            println("Average moves made: " + (movesMade.toDouble() / gamesWon))
+        }
+
+    }
+}
@@ -0,0 +1,37 @@
+package com.cdio.solitaire
+
+import com.cdio.solitaire.controller.StrategyWeights
+import com.cdio.solitaire.simulation.SeededDeckSource
+import com.cdio.solitaire.simulation.SimulationResult
+import com.cdio.solitaire.simulation.SimulationRunner
+import com.cdio.solitaire.simulation.WeightTuner
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class WeightTunerTest {
+    @Test
+    fun defaultWeights_playLikeTheStrategy() {
+        val decks = SeededDeckSource(3L, 300)
+        val strategy = SimulationRunner(parallelism = 2).run(decks)
+        val weights = StrategyWeights(StrategyWeights.DEFAULT.toIntArray())
+        assertEquals(strategy, WeightTuner(parallelism = 2).evaluate(weights, decks))
+    }
+
+    @Test
+    fun tune_neverLosesWinsOnItsDecks() {
+        val tuner = WeightTuner(games = 200, generations = 2, candidatesPerGeneration = 3, seed = 11L, parallelism = 2)
+        val result = tuner.tune()
+        val start = tuner.evaluate(StrategyWeights.DEFAULT, SeededDeckSource(11L, 200))
+        assertTrue(result.tuning.gamesWon >= start.gamesWon)
+        assertEquals(200L, result.validation.games)
+    }
+
+    @Test
+    fun winRateInterval_containsWinRate() {
+        val result = SimulationResult(1000, 300, 0, LongArray(0))
+        val interval = result.winRateInterval()
+        assertEquals(0.2724, interval[0], 0.001)
+        assertEquals(0.3291, interval[1], 0.001)
+    }
+}